@@ -0,0 +1,127 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.repository.MemberAsyncRepository;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * 동시 요청 REQUESTS 건을 처리하는 처리량 비교. (부하 테스트)
+ *
+ * <ul>
+ * <li>blocking : 요청마다 요청 스레드 하나가 트랜잭션이 끝날 때까지 붙잡혀 있다 (톰캣 기본 방식)
+ * <li>async : 요청 스레드는 MemberAsyncRepository 에 넘기고 바로 돌아오며, DB 작업은 max-concurrency 만큼만 동시에 실행된다
+ * </ul>
+ *
+ * <p>mode 파라미터로 가상 스레드(auto)와 고정 크기 풀(pool)을 비교한다. 가상 스레드는 Java 21 이상에서만 사용된다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AsyncSearchBenchmark {
+
+	private static final long SEED = 42;
+	private static final int REQUESTS = 200;
+
+	@Param({ "100000" })
+	private int members;
+
+	@Param({ "1000" })
+	private int teams;
+
+	@Param({ "auto", "pool" })
+	private String mode;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private MemberAsyncRepository memberAsyncRepository;
+	private TransactionTemplate readOnly;
+	private MemberDataGenerator generator;
+	private ExecutorService requestThreads;
+	private final SplittableRandom random = new SplittableRandom(SEED);
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("async" + members + mode,
+				"member.search-cache.enabled=false",
+				"member.async.mode=" + mode);
+		generator = new MemberDataGenerator(SEED, teams);
+		generator.load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		memberAsyncRepository = context.getBean(MemberAsyncRepository.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+		//톰캣 기본 maxThreads
+		requestThreads = Executors.newFixedThreadPool(200);
+	}
+
+	@TearDown
+	public void tearDown() {
+		requestThreads.shutdownNow();
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public long blocking() {
+		List<CompletableFuture<List<MemberTeamDto>>> responses = new ArrayList<>(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			MemberSerachCondition condition = nextCondition();
+			responses.add(CompletableFuture.supplyAsync(
+					() -> readOnly.execute(status -> memberJpaRepository.serachByBuilder(condition)), requestThreads));
+		}
+		return join(responses);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public long async() {
+		List<CompletableFuture<List<MemberTeamDto>>> responses = new ArrayList<>(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			responses.add(memberAsyncRepository.serachByBuilder(nextCondition()));
+		}
+		return join(responses);
+	}
+
+	private MemberSerachCondition nextCondition() {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(generator.teamName(1 + random.nextLong(Math.min(50, teams))));
+		condition.setAgeGoe(30);
+		condition.setAgeLoe(40);
+		return condition;
+	}
+
+	private static long join(List<CompletableFuture<List<MemberTeamDto>>> responses) {
+		long rows = 0;
+		for (CompletableFuture<List<MemberTeamDto>> response : responses) {
+			rows += response.join().size();
+		}
+		return rows;
+	}
+}
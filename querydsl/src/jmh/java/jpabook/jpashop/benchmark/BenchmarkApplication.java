@@ -0,0 +1,39 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import jpabook.jpashop.QuerydslApplication;
+
+/**
+ * 벤치마크용 애플리케이션 컨텍스트. 매 벤치마크마다 별도의 in-memory H2를 사용한다.
+ * application.yml 설정을 덮어써야 하므로 커맨드라인 인자로 넘긴다.
+ */
+public final class BenchmarkApplication {
+
+	private BenchmarkApplication() {
+	}
+
+	public static ConfigurableApplicationContext start(String databaseName, String... properties) {
+		List<String> args = new ArrayList<>(Arrays.asList(
+				"--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+				"--spring.jpa.hibernate.ddl-auto=create",
+				"--spring.jpa.open-in-view=false",
+				"--logging.level.root=warn",
+				"--logging.level.org.hibernate.SQL=warn",
+				"--logging.level.org.hibernate.type=warn"));
+		for (String property : properties) {
+			args.add("--" + property);
+		}
+
+		return new SpringApplicationBuilder(QuerydslApplication.class)
+				.web(WebApplicationType.NONE)
+				.logStartupInfo(false)
+				.run(args.toArray(new String[0]));
+	}
+}
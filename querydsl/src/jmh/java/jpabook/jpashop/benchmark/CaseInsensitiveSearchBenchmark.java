@@ -0,0 +1,90 @@
+package jpabook.jpashop.benchmark;
+
+import static jpabook.jpashop.entity.QMember.member;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * 대소문자 무시 username 조회. lower(username) 비교(풀 스캔)와 username_lower 인덱스 조회를 비교한다.
+ * 입력은 대문자로 바꿔서 넘긴다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CaseInsensitiveSearchBenchmark {
+
+	private static final long SEED = 42;
+
+	@Param({ "1000000" })
+	private int members;
+
+	@Param({ "5000" })
+	private int teams;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate readOnly;
+	private MemberDataGenerator generator;
+	private final SplittableRandom random = new SplittableRandom(SEED);
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("ignoreCase" + members);
+		generator = new MemberDataGenerator(SEED, teams);
+		generator.load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		queryFactory = context.getBean(JPAQueryFactory.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<Member> lowerFunction() {
+		String username = nextUsername().toLowerCase(Locale.ROOT);
+		return readOnly.execute(status -> queryFactory
+				.selectFrom(member)
+				.where(member.username.lower().eq(username))
+				.fetch());
+	}
+
+	@Benchmark
+	public List<Member> lowerColumn() {
+		String username = nextUsername();
+		return readOnly.execute(status -> memberJpaRepository.findByUsernameIgnoreCase(username));
+	}
+
+	private String nextUsername() {
+		return generator.username(1 + random.nextLong(members)).toUpperCase(Locale.ROOT);
+	}
+}
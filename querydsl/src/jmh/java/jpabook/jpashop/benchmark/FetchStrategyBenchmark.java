@@ -0,0 +1,134 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import jpabook.jpashop.repository.TeamJpaRepository;
+import jpabook.jpashop.repository.support.QueryCountGuard;
+import jpabook.jpashop.repository.support.QueryCountGuard.Measured;
+
+/**
+ * 회원 + 팀 조회 방식별 시간과 SQL 문장 수를 비교한다.
+ *
+ * <p>lazyTeam 이 기존 방식(지연 로딩, 팀 수만큼 추가 쿼리)이고 나머지가 개선 방식이다.
+ * 보조 지표 statementsPerCall 이 호출 한 번에 실행된 SQL 문장 수다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FetchStrategyBenchmark {
+
+	private static final long SEED = 42;
+
+	@Param({ "10000" })
+	private int members;
+
+	@Param({ "500" })
+	private int teams;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private TeamJpaRepository teamJpaRepository;
+	private QueryCountGuard queryCountGuard;
+	private TransactionTemplate readOnly;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Statements {
+
+		public long statements;
+		public long calls;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			statements = 0;
+			calls = 0;
+		}
+
+		public double statementsPerCall() {
+			return calls == 0 ? 0 : (double) statements / calls;
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("fetch" + members, "member.query-guard.mode=off");
+		new MemberDataGenerator(SEED, teams).load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		teamJpaRepository = context.getBean(TeamJpaRepository.class);
+		queryCountGuard = context.getBean(QueryCountGuard.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public long lazyTeam(Statements statements) {
+		return measure(statements, () -> teamNames(memberJpaRepository.findAll_Querydsl()));
+	}
+
+	@Benchmark
+	public long fetchJoin(Statements statements) {
+		return measure(statements, () -> teamNames(memberJpaRepository.findAllWithTeam_Querydsl()));
+	}
+
+	@Benchmark
+	public long entityGraph(Statements statements) {
+		return measure(statements, () -> teamNames(memberJpaRepository.findAllWithTeam_EntityGraph()));
+	}
+
+	@Benchmark
+	public long teamMembersBatch(Statements statements) {
+		return measure(statements, () -> {
+			long sum = 0;
+			for (Team team : teamJpaRepository.findAllWithMembers()) {
+				sum += team.getMembers().size();
+			}
+			return sum;
+		});
+	}
+
+	private long measure(Statements statements, Supplier<Long> action) {
+		Measured<Long> measured = queryCountGuard.measureResult(() -> readOnly.execute(status -> action.get()));
+		statements.statements += measured.getRecording().getStatements();
+		statements.calls++;
+		return measured.getResult();
+	}
+
+	private static long teamNames(List<Member> result) {
+		long length = 0;
+		for (Member member : result) {
+			if (member.getTeam() != null) {
+				length += member.getTeam().getName().length();
+			}
+		}
+		return length;
+	}
+}
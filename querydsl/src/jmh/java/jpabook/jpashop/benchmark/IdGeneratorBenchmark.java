@@ -0,0 +1,111 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Hello;
+import jpabook.jpashop.entity.Member;
+
+/**
+ * 스레드 수별 insert 처리량. 결과 단위는 행/초.
+ * Hello 는 기본 @GeneratedValue(hibernate_sequence, 한 건마다 시퀀스 조회), Member 는 BlockSequenceOptimizer 를 사용한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IdGeneratorBenchmark {
+
+	private static final int ROWS = 100;
+
+	private ConfigurableApplicationContext context;
+	private EntityManager em;
+	private TransactionTemplate transactionTemplate;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("id", "spring.datasource.hikari.maximum-pool-size=32");
+		em = context.getBean(EntityManager.class);
+		transactionTemplate = context.getBean(TransactionTemplate.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	@OperationsPerInvocation(ROWS)
+	public void blockSequence_1() {
+		insertMembers();
+	}
+
+	@Benchmark
+	@Threads(8)
+	@OperationsPerInvocation(ROWS)
+	public void blockSequence_8() {
+		insertMembers();
+	}
+
+	@Benchmark
+	@Threads(32)
+	@OperationsPerInvocation(ROWS)
+	public void blockSequence_32() {
+		insertMembers();
+	}
+
+	@Benchmark
+	@Threads(1)
+	@OperationsPerInvocation(ROWS)
+	public void defaultSequence_1() {
+		insertHellos();
+	}
+
+	@Benchmark
+	@Threads(8)
+	@OperationsPerInvocation(ROWS)
+	public void defaultSequence_8() {
+		insertHellos();
+	}
+
+	@Benchmark
+	@Threads(32)
+	@OperationsPerInvocation(ROWS)
+	public void defaultSequence_32() {
+		insertHellos();
+	}
+
+	private void insertMembers() {
+		transactionTemplate.executeWithoutResult(status -> {
+			for (int i = 0; i < ROWS; i++) {
+				em.persist(new Member("member" + i, i));
+			}
+		});
+	}
+
+	private void insertHellos() {
+		transactionTemplate.executeWithoutResult(status -> {
+			for (int i = 0; i < ROWS; i++) {
+				em.persist(new Hello());
+			}
+		});
+	}
+}
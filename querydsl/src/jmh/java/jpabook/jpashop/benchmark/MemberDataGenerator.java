@@ -0,0 +1,119 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 시드 기반 회원/팀 데이터 생성기. 같은 시드면 항상 같은 데이터가 만들어진다.
+ *
+ * <p>각 값은 (seed, id) 만으로 계산되므로 저장해 두지 않아도 벤치마크에서 존재하는 username 등을 다시 구할 수 있다.
+ * <ul>
+ * <li>팀 크기: 앞쪽 팀에 회원이 몰리는 치우친 분포
+ * <li>나이: 평균 38, 표준편차 12 인 정규분포 (18 ~ 75)
+ * <li>이름: 성 + 이름 조합, 일부는 숫자가 붙고 동명이인이 있다
+ * </ul>
+ */
+public class MemberDataGenerator {
+
+	private static final int BATCH_SIZE = 10_000;
+
+	private static final String[] LAST_NAMES = { "kim", "lee", "park", "choi", "jung", "kang", "cho", "yoon", "jang",
+			"lim", "han", "oh", "seo", "shin", "kwon", "hwang", "ahn", "song", "yoo", "hong" };
+	private static final String[] FIRST_NAMES = { "minjun", "seojun", "doyun", "yejun", "siwoo", "hajun", "jiho",
+			"seoyeon", "seoyun", "jiwoo", "seohyun", "minseo", "haeun", "hayoon", "jiyoo", "yuna", "jimin", "eunwoo",
+			"junseo", "gunwoo", "hyunwoo", "jihoon", "sumin", "yerin", "chaewon" };
+	private static final String[] TEAM_PREFIXES = { "seoul", "busan", "incheon", "daegu", "daejeon", "gwangju",
+			"ulsan", "suwon", "jeju", "sejong" };
+
+	private final long seed;
+	private final int teams;
+
+	public MemberDataGenerator(long seed, int teams) {
+		if (teams < 1) {
+			throw new IllegalArgumentException("teams는 1 이상이어야 합니다. teams = " + teams);
+		}
+		this.seed = seed;
+		this.teams = teams;
+	}
+
+	public int getTeams() {
+		return teams;
+	}
+
+	public String teamName(long teamId) {
+		return TEAM_PREFIXES[(int) (teamId % TEAM_PREFIXES.length)] + "-" + teamId;
+	}
+
+	public String username(long memberId) {
+		String name = pick(LAST_NAMES, memberId, 1) + pick(FIRST_NAMES, memberId, 2);
+		//30% 는 숫자가 붙는다
+		if (uniform(memberId, 3) < 0.3) {
+			name += (int) (uniform(memberId, 4) * 100);
+		}
+		return name;
+	}
+
+	public int age(long memberId) {
+		//Box-Muller
+		double u1 = Math.max(uniform(memberId, 5), Double.MIN_VALUE);
+		double u2 = uniform(memberId, 6);
+		double gaussian = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+		int age = (int) Math.round(38 + gaussian * 12);
+		return Math.min(75, Math.max(18, age));
+	}
+
+	public long teamId(long memberId) {
+		double u = uniform(memberId, 7);
+		return 1 + (long) (teams * u * u);
+	}
+
+	/**
+	 * 1 ~ members 까지의 회원과 1 ~ teams 까지의 팀을 JDBC 배치로 넣는다.
+	 * 이후에 엔티티로 저장해도 id 가 겹치지 않도록 시퀀스를 다시 시작한다.
+	 */
+	public void load(JdbcTemplate jdbcTemplate, long members) {
+		List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+		for (long teamId = 1; teamId <= teams; teamId++) {
+			rows.add(new Object[] { teamId, teamName(teamId) });
+			if (rows.size() == BATCH_SIZE) {
+				jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", rows);
+				rows.clear();
+			}
+		}
+		jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", rows);
+		rows.clear();
+
+		for (long memberId = 1; memberId <= members; memberId++) {
+			String username = username(memberId);
+			rows.add(new Object[] { memberId, username, username.toLowerCase(Locale.ROOT), age(memberId), teamId(memberId) });
+			if (rows.size() == BATCH_SIZE) {
+				insertMembers(jdbcTemplate, rows);
+				rows.clear();
+			}
+		}
+		insertMembers(jdbcTemplate, rows);
+
+		jdbcTemplate.execute("alter sequence team_seq restart with " + (teams + 1));
+		jdbcTemplate.execute("alter sequence member_seq restart with " + (members + 1));
+	}
+
+	private static void insertMembers(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+		jdbcTemplate.batchUpdate("insert into member (member_id, username, username_lower, age, team_id) values (?, ?, ?, ?, ?)", rows);
+	}
+
+	private String pick(String[] values, long id, int salt) {
+		return values[(int) (uniform(id, salt) * values.length)];
+	}
+
+	//[0, 1) 균등분포. splitmix64 로 (seed, id, salt) 를 섞는다
+	private double uniform(long id, int salt) {
+		long z = seed + id * 0x9E3779B97F4A7C15L + salt * 0xD1B54A32D192ED03L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+}
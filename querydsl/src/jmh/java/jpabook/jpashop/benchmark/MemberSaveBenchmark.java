@@ -0,0 +1,83 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * save 반복 호출과 saveAll(JDBC 배치)의 insert 처리량 비교. 결과 단위는 행/초.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MemberSaveBenchmark {
+
+	private static final int ROWS = 10_000;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private EntityManager em;
+	private TransactionTemplate transactionTemplate;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("save");
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		em = context.getBean(EntityManager.class);
+		transactionTemplate = context.getBean(TransactionTemplate.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void saveLoop() {
+		transactionTemplate.executeWithoutResult(status -> {
+			for (Member member : newMembers()) {
+				memberJpaRepository.save(member);
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void saveAll() {
+		transactionTemplate.executeWithoutResult(status -> memberJpaRepository.saveAll(newMembers()));
+	}
+
+	private List<Member> newMembers() {
+		Team team = new Team("team");
+		em.persist(team);
+
+		List<Member> members = new ArrayList<>(ROWS);
+		for (int i = 0; i < ROWS; i++) {
+			members.add(new Member("member" + i, i % 100, team));
+		}
+		return members;
+	}
+}
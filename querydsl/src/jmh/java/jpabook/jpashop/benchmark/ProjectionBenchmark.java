@@ -0,0 +1,114 @@
+package jpabook.jpashop.benchmark;
+
+import static jpabook.jpashop.entity.QMember.member;
+import static jpabook.jpashop.entity.QTeam.team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.dto.MemberDto;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.dto.QMemberDto;
+import jpabook.jpashop.dto.QMemberTeamDto;
+
+/**
+ * DTO 프로젝션 방식별 비용. 모든 회원을 (username, age) 로 조회한다.
+ * 행당 비용은 점수와 gc.alloc.rate.norm 을 rows 로 나눠서 비교한다. (gc 프로파일러는 build.gradle 에서 켠다)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProjectionBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	private int rows;
+
+	private ConfigurableApplicationContext context;
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate readOnly;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("projection" + rows);
+		new MemberDataGenerator(42, Math.max(1, rows / 100)).load(context.getBean(JdbcTemplate.class), rows);
+		queryFactory = context.getBean(JPAQueryFactory.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<Tuple> tuple() {
+		return readOnly.execute(status -> queryFactory
+				.select(member.username, member.age)
+				.from(member)
+				.fetch());
+	}
+
+	@Benchmark
+	public List<MemberDto> bean() {
+		return readOnly.execute(status -> queryFactory
+				.select(Projections.bean(MemberDto.class, member.username, member.age))
+				.from(member)
+				.fetch());
+	}
+
+	@Benchmark
+	public List<MemberDto> fields() {
+		return readOnly.execute(status -> queryFactory
+				.select(Projections.fields(MemberDto.class, member.username, member.age))
+				.from(member)
+				.fetch());
+	}
+
+	@Benchmark
+	public List<MemberDto> constructor() {
+		return readOnly.execute(status -> queryFactory
+				.select(Projections.constructor(MemberDto.class, member.username, member.age))
+				.from(member)
+				.fetch());
+	}
+
+	@Benchmark
+	public List<MemberDto> queryProjection() {
+		return readOnly.execute(status -> queryFactory
+				.select(new QMemberDto(member.username, member.age))
+				.from(member)
+				.fetch());
+	}
+
+	//serachByBuilder 와 같은 조인 + 5개 컬럼. 위의 2개 컬럼 조회와는 따로 비교한다
+	@Benchmark
+	public List<MemberTeamDto> queryProjectionMemberTeam() {
+		return readOnly.execute(status -> queryFactory
+				.select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+				.from(member)
+				.leftJoin(member.team, team)
+				.fetch());
+	}
+}
@@ -0,0 +1,98 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * 회원 전체 조회의 시간과 할당량 비교. 할당량은 gc 프로파일러의 gc.alloc.rate.norm(바이트/op)으로 본다.
+ *
+ * <ul>
+ * <li>managed : 쓰기 트랜잭션에서 findAll. 엔티티마다 스냅샷을 만들고 커밋 때 변경 감지를 한다 (기존 방식)
+ * <li>readOnlyHints : 같은 쓰기 트랜잭션에서 findAll_ReadOnly. 스냅샷과 변경 감지, 조회 전 flush 가 없다
+ * <li>stateless : findAllStateless. 영속성 컨텍스트 자체가 없다
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReadOnlyQueryBenchmark {
+
+	private static final long SEED = 42;
+	private static final int FETCH_SIZE = 1000;
+
+	@Param({ "100000" })
+	private int members;
+
+	@Param({ "1000" })
+	private int teams;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("readOnly" + members, "member.query-guard.mode=off");
+		new MemberDataGenerator(SEED, teams).load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		PlatformTransactionManager transactionManager = context.getBean(TransactionTemplate.class).getTransactionManager();
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public long managed() {
+		return readWrite.execute(status -> sumAges(memberJpaRepository.findAll()));
+	}
+
+	@Benchmark
+	public long readOnlyHints() {
+		return readWrite.execute(status -> sumAges(memberJpaRepository.findAll_ReadOnly()));
+	}
+
+	@Benchmark
+	public long stateless() {
+		return readOnly.execute(status -> {
+			try (Stream<Member> stream = memberJpaRepository.findAllStateless(FETCH_SIZE)) {
+				return stream.mapToLong(Member::getAge).sum();
+			}
+		});
+	}
+
+	private static long sumAges(List<Member> result) {
+		long sum = 0;
+		for (Member member : result) {
+			sum += member.getAge();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,171 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * MemberJpaRepository 전체 메서드를 운영 규모 데이터(MemberDataGenerator)로 측정한다.
+ *
+ * <p>SampleTime 결과의 p0.50 / p0.99 가 지연시간, Throughput 결과의 rows 보조 지표가 밀리초당 반환 행 수다.
+ * 검색 결과 캐시는 꺼서 항상 DB 를 조회한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.SampleTime, Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RepositoryBenchmark {
+
+	private static final long SEED = 42;
+
+	@Param({ "1000000" })
+	private int members;
+
+	@Param({ "5000" })
+	private int teams;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private TransactionTemplate readOnly;
+	private MemberDataGenerator generator;
+
+	@State(Scope.Thread)
+	public static class Probe {
+
+		private final SplittableRandom random = new SplittableRandom(SEED);
+
+		long memberId(RepositoryBenchmark benchmark) {
+			return 1 + random.nextLong(benchmark.members);
+		}
+
+		//회원이 몰려 있는 앞쪽 팀 위주
+		long teamId(RepositoryBenchmark benchmark) {
+			return 1 + random.nextLong(Math.min(50, benchmark.teams));
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Rows {
+
+		public long rows;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			rows = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("repository" + members, "member.search-cache.enabled=false");
+		generator = new MemberDataGenerator(SEED, teams);
+		generator.load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Optional<Member> findById(Probe probe, Rows rows) {
+		Optional<Member> result = readOnly.execute(status -> memberJpaRepository.findById(probe.memberId(this)));
+		rows.rows += result.isPresent() ? 1 : 0;
+		return result;
+	}
+
+	@Benchmark
+	public List<Member> findAll(Rows rows) {
+		return count(rows, readOnly.execute(status -> memberJpaRepository.findAll()));
+	}
+
+	@Benchmark
+	public List<Member> findAll_Querydsl(Rows rows) {
+		return count(rows, readOnly.execute(status -> memberJpaRepository.findAll_Querydsl()));
+	}
+
+	@Benchmark
+	public List<Member> findByUsername(Probe probe, Rows rows) {
+		String username = generator.username(probe.memberId(this));
+		return count(rows, readOnly.execute(status -> memberJpaRepository.findByUsername(username)));
+	}
+
+	@Benchmark
+	public List<Member> findByUsername_Querydsl(Probe probe, Rows rows) {
+		String username = generator.username(probe.memberId(this));
+		return count(rows, readOnly.execute(status -> memberJpaRepository.findByUsername_Querydsl(username)));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> serachByBuilder(Probe probe, Rows rows) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(generator.teamName(probe.teamId(this)));
+		condition.setAgeGoe(30);
+		condition.setAgeLoe(40);
+		return count(rows, readOnly.execute(status -> memberJpaRepository.serachByBuilder(condition)));
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> serachByBuilder_username(Probe probe, Rows rows) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setUsername(generator.username(probe.memberId(this)));
+		return count(rows, readOnly.execute(status -> memberJpaRepository.serachByBuilder(condition)));
+	}
+
+	//트랜잭션 밖에서 호출해야 count / content 가 동시에 실행된다. 비교를 위해 serachPage 도 같은 조건으로 호출한다
+	@Benchmark
+	public Page<MemberTeamDto> serachPage(Probe probe, Rows rows) {
+		Page<MemberTeamDto> page = memberJpaRepository.serachPage(pageCondition(probe), PageRequest.of(0, 20));
+		rows.rows += page.getNumberOfElements();
+		return page;
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> serachPageConcurrent(Probe probe, Rows rows) {
+		Page<MemberTeamDto> page = memberJpaRepository.serachPageConcurrent(pageCondition(probe), PageRequest.of(0, 20));
+		rows.rows += page.getNumberOfElements();
+		return page;
+	}
+
+	private MemberSerachCondition pageCondition(Probe probe) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(generator.teamName(probe.teamId(this)));
+		condition.setAgeGoe(20);
+		return condition;
+	}
+
+	private static <T> List<T> count(Rows rows, List<T> result) {
+		rows.rows += result.size();
+		return result;
+	}
+}
@@ -0,0 +1,120 @@
+package jpabook.jpashop.benchmark;
+
+import static jpabook.jpashop.entity.QMember.member;
+import static jpabook.jpashop.entity.QTeam.team;
+
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.repository.MemberColumnarSnapshot;
+import jpabook.jpashop.repository.MemberJpaRepository;
+
+/**
+ * 분석용 조건(나이 범위, 팀별 나이 집계)을 DB 와 MemberColumnarSnapshot 에서 계산하는 시간 비교.
+ *
+ * <ul>
+ * <li>db* : 매번 SQL 로 계산한다 (serachCount, group by)
+ * <li>snapshot* : 메모리 비트맵과 병렬 스캔으로 계산한다. 스냅샷을 읽는 시간은 setUp 에서 한 번만 든다
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SnapshotBenchmark {
+
+	private static final long SEED = 42;
+
+	@Param({ "1000000" })
+	private int members;
+
+	@Param({ "1000" })
+	private int teams;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private MemberColumnarSnapshot snapshot;
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate readOnly;
+	private MemberSerachCondition ageRange;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("snapshot" + members,
+				"member.search-cache.enabled=false",
+				"member.snapshot.enabled=true");
+		new MemberDataGenerator(SEED, teams).load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		snapshot = context.getBean(MemberColumnarSnapshot.class);
+		snapshot.refresh();
+		queryFactory = context.getBean(JPAQueryFactory.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+		ageRange = new MemberSerachCondition();
+		ageRange.setAgeGoe(30);
+		ageRange.setAgeLoe(40);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public long dbCount() {
+		return readOnly.execute(status -> memberJpaRepository.serachCount(ageRange));
+	}
+
+	@Benchmark
+	public long snapshotCount() {
+		return snapshot.count(ageRange);
+	}
+
+	@Benchmark
+	public double dbAgeByTeam() {
+		List<Tuple> rows = readOnly.execute(status -> queryFactory
+				.select(team.id, member.age.avg())
+				.from(member)
+				.join(member.team, team)
+				.where(member.age.between(30, 40))
+				.groupBy(team.id)
+				.fetch());
+		double sum = 0;
+		for (Tuple row : rows) {
+			sum += row.get(member.age.avg());
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double snapshotAgeByTeam() {
+		Map<Long, IntSummaryStatistics> byTeam = snapshot.ageStatisticsByTeam(ageRange);
+		double sum = 0;
+		for (IntSummaryStatistics statistics : byTeam.values()) {
+			sum += statistics.getAverage();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,112 @@
+package jpabook.jpashop.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import jpabook.jpashop.repository.sql.MemberSqlRepository.Engine;
+
+/**
+ * serachByBuilder 의 JPQL 방식과 querydsl-sql 방식(MemberSqlRepository) 비교.
+ *
+ * <p>행 단위 비용은 결과를 행 수로 나눠 본다. 보조 지표 rowsPerCall 이 호출 한 번의 결과 행 수이므로
+ * 시간/op 와 gc 프로파일러의 gc.alloc.rate.norm(바이트/op)을 rowsPerCall 로 나누면 행당 CPU 시간과 할당량이다.
+ * 같은 크기의 결과를 만들기 위해 rows 파라미터로 나이 범위를 조절한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SqlSearchBenchmark {
+
+	private static final long SEED = 42;
+
+	@Param({ "100000" })
+	private int members;
+
+	@Param({ "1000" })
+	private int teams;
+
+	@Param({ "jpql", "sql" })
+	private String engine;
+
+	//결과 행 수 = 나이 하나당 회원 수 x 나이 범위
+	@Param({ "1", "10" })
+	private int ageRange;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private TransactionTemplate readOnly;
+	private MemberSerachCondition condition;
+	private Engine searchEngine;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Rows {
+
+		public long rows;
+		public long calls;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			rows = 0;
+			calls = 0;
+		}
+
+		public double rowsPerCall() {
+			return calls == 0 ? 0 : (double) rows / calls;
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("sqlSearch" + members,
+				"member.search-cache.enabled=false",
+				"member.query-guard.mode=off");
+		new MemberDataGenerator(SEED, teams).load(context.getBean(JdbcTemplate.class), members);
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+		searchEngine = Engine.valueOf(engine.toUpperCase());
+		condition = new MemberSerachCondition();
+		condition.setAgeGoe(30);
+		condition.setAgeLoe(30 + ageRange - 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public long search(Rows rows) {
+		List<MemberTeamDto> result = readOnly.execute(status -> memberJpaRepository.serachByBuilder(condition, searchEngine));
+		rows.rows += result.size();
+		rows.calls++;
+		long sum = 0;
+		for (MemberTeamDto dto : result) {
+			sum += dto.getAge();
+		}
+		return sum;
+	}
+}
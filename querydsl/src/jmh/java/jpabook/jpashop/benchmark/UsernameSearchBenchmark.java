@@ -0,0 +1,108 @@
+package jpabook.jpashop.benchmark;
+
+import static jpabook.jpashop.entity.QMember.member;
+import static jpabook.jpashop.entity.QTeam.team;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.dto.QMemberTeamDto;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import jpabook.jpashop.repository.MemberNgramIndexer;
+
+/**
+ * 검색창 입력 시나리오. username 부분 검색을 LIKE '%keyword%' 와 n-gram 색인으로 비교한다.
+ * 검색어는 실제 username 의 가운데 부분이며, 결과는 LIMIT 건까지만 가져온다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UsernameSearchBenchmark {
+
+	private static final long SEED = 42;
+	private static final int LIMIT = 20;
+
+	@Param({ "1000000" })
+	private int members;
+
+	@Param({ "5000" })
+	private int teams;
+
+	//검색어 길이
+	@Param({ "3", "5" })
+	private int length;
+
+	private ConfigurableApplicationContext context;
+	private MemberJpaRepository memberJpaRepository;
+	private JPAQueryFactory queryFactory;
+	private TransactionTemplate readOnly;
+	private MemberDataGenerator generator;
+	private final SplittableRandom random = new SplittableRandom(SEED);
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start("ngram" + members);
+		generator = new MemberDataGenerator(SEED, teams);
+		generator.load(context.getBean(JdbcTemplate.class), members);
+		//JDBC 로 넣은 회원은 리스너를 거치지 않으므로 색인을 새로 만든다
+		context.getBean(MemberNgramIndexer.class).rebuild();
+		memberJpaRepository = context.getBean(MemberJpaRepository.class);
+		queryFactory = context.getBean(JPAQueryFactory.class);
+		readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+		readOnly.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> like() {
+		String keyword = nextKeyword();
+		return readOnly.execute(status -> queryFactory
+				.select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(member.username.containsIgnoreCase(keyword))
+				.orderBy(member.id.asc())
+				.limit(LIMIT)
+				.fetch());
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> ngram() {
+		String keyword = nextKeyword();
+		return readOnly.execute(status -> memberJpaRepository.serachByUsernameContains(keyword, LIMIT));
+	}
+
+	private String nextKeyword() {
+		String username;
+		do {
+			username = generator.username(1 + random.nextLong(members));
+		} while (username.length() < length);
+		int start = random.nextInt(username.length() - length + 1);
+		return username.substring(start, start + length);
+	}
+}
@@ -0,0 +1,103 @@
+package jpabook.jpashop.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@RestController
+public class MemberController {
+	
+	//MediaType.APPLICATION_NDJSON 은 Spring 5.3 부터 있다
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+	
+	private static final int FETCH_SIZE = 1000;
+	//처음 한 건은 바로 보내서 첫 바이트까지의 시간을 줄이고, 이후에는 FLUSH_ROWS 마다 보낸다
+	private static final int FLUSH_ROWS = 1000;
+	
+	private final MemberJpaRepository memberJpaRepository;
+	private final PlatformTransactionManager transactionManager;
+	private final ObjectMapper objectMapper;
+	
+	/**
+	 * 검색 결과를 한 줄에 하나씩 JSON 으로 보낸다. (NDJSON)
+	 * DB 커서에서 읽는 대로 쓰므로 결과가 많아도 메모리 사용량이 일정하다.
+	 * 예) GET /v1/members?taemName=teamA&ageGoe=20
+	 */
+	@GetMapping(value = "/v1/members", produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> searchMemberV1(MemberSerachCondition condition) {
+		StreamingResponseBody body = out -> writeMembers(condition, out);
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+				.body(body);
+	}
+	
+	//응답 스레드에서 실행된다. 커서는 트랜잭션이 열려 있는 동안만 읽을 수 있다
+	private void writeMembers(MemberSerachCondition condition, OutputStream out) throws IOException {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		
+		try {
+			readOnly.executeWithoutResult(status -> {
+				try (Stream<MemberTeamDto> members = memberJpaRepository.serachStream(condition, FETCH_SIZE);
+						JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+					generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+					generator.setRootValueSeparator(new SerializedString(""));
+					write(members.iterator(), generator);
+				} catch (IOException e) {
+					throw new StreamingException(e);
+				}
+			});
+		} catch (StreamingException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private void write(Iterator<MemberTeamDto> members, JsonGenerator generator) throws IOException {
+		//건마다 flush 하지 않는다
+		ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		long rows = 0;
+		while (members.hasNext()) {
+			writer.writeValue(generator, members.next());
+			generator.writeRaw('\n');
+			if (++rows % FLUSH_ROWS == 1) {
+				generator.flush();
+			}
+		}
+		generator.flush();
+	}
+	
+	//클라이언트가 연결을 끊으면 트랜잭션을 롤백하고 커서를 닫은 뒤 IOException 을 그대로 던진다
+	private static class StreamingException extends RuntimeException {
+		
+		StreamingException(IOException cause) {
+			super(cause);
+		}
+		
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
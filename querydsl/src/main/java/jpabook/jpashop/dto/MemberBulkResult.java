@@ -0,0 +1,25 @@
+package jpabook.jpashop.dto;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * 청크 단위 벌크 연산 결과. maxChunkNanos 는 가장 오래 걸린 청크 트랜잭션 시간으로, 행 잠금을 잡고 있던 최대 시간이다.
+ */
+@Data
+public class MemberBulkResult {
+
+	private final long rows;
+	private final int chunks;
+	private final long elapsedNanos;
+	private final long maxChunkNanos;
+
+	public double rowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	public Duration maxLockHold() {
+		return Duration.ofNanos(maxChunkNanos);
+	}
+}
@@ -0,0 +1,58 @@
+package jpabook.jpashop.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 마지막으로 조회한 행의 위치(정렬 키 + member id).
+ * 클라이언트에는 encode()한 문자열만 넘겨준다.
+ */
+@ToString
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberKeysetCursor {
+
+	private static final String SEPARATOR = ":";
+
+	private final MemberKeysetOrder order;
+	private final Integer age;
+	private final Long memberId;
+
+	public static MemberKeysetCursor of(MemberTeamDto last, MemberKeysetOrder order) {
+		Integer age = order.isAgeOrder() ? last.getAge() : null;
+		return new MemberKeysetCursor(order, age, last.getMemberId());
+	}
+
+	public String encode() {
+		String raw = order.name() + SEPARATOR + (age == null ? "" : age) + SEPARATOR + memberId;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static MemberKeysetCursor decode(String cursor, MemberKeysetOrder order) {
+		String[] parts;
+		try {
+			parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("잘못된 커서 입니다. cursor = " + cursor, e);
+		}
+
+		if (parts.length != 3 || !order.name().equals(parts[0])) {
+			throw new IllegalArgumentException("정렬 기준이 다른 커서 입니다. cursor = " + cursor + ", order = " + order);
+		}
+
+		try {
+			Integer age = parts[1].isEmpty() ? null : Integer.valueOf(parts[1]);
+			if (order.isAgeOrder() && age == null) {
+				throw new IllegalArgumentException("나이 정렬 커서에 나이가 없습니다. cursor = " + cursor);
+			}
+			return new MemberKeysetCursor(order, age, Long.valueOf(parts[2]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("잘못된 커서 입니다. cursor = " + cursor, e);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.dto;
+
+/**
+ * 키셋 페이징 정렬 기준. 동일한 나이는 member id로 순서를 고정한다.
+ */
+public enum MemberKeysetOrder {
+
+	ID_ASC,
+	ID_DESC,
+	AGE_ASC,
+	AGE_DESC;
+
+	public boolean isDescending() {
+		return this == ID_DESC || this == AGE_DESC;
+	}
+
+	public boolean isAgeOrder() {
+		return this == AGE_ASC || this == AGE_DESC;
+	}
+}
@@ -0,0 +1,17 @@
+package jpabook.jpashop.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class MemberKeysetSlice {
+
+	private final List<MemberTeamDto> content;
+	//다음 페이지가 없으면 null
+	private final String nextCursor;
+
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+}
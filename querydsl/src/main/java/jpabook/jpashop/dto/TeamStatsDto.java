@@ -0,0 +1,31 @@
+package jpabook.jpashop.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+
+	private Long teamId;
+	private String teamName;
+	private long memberCount;
+	private long ageSum;
+	//회원이 없으면 null
+	private Integer minAge;
+	private Integer maxAge;
+
+	@QueryProjection
+	public TeamStatsDto(Long teamId, String teamName, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+		this.teamId = teamId;
+		this.teamName = teamName;
+		this.memberCount = memberCount;
+		this.ageSum = ageSum;
+		this.minAge = minAge;
+		this.maxAge = maxAge;
+	}
+
+	public Double getAverageAge() {
+		return memberCount == 0 ? null : (double) ageSum / memberCount;
+	}
+}
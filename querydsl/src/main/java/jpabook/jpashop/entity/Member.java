@@ -1,12 +1,26 @@
 package jpabook.jpashop.entity;
 
+import java.util.Locale;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import jpabook.jpashop.entity.id.BlockSequenceOptimizer;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -19,15 +33,36 @@ import lombok.ToString;
 @Getter
 @Setter
 @Entity
+@Table(indexes = {
+		//username 검색 + 나이 범위를 한 인덱스로 처리한다
+		@Index(name = "idx_member_username_age", columnList = "username, age"),
+		@Index(name = "idx_member_age", columnList = "age"),
+		@Index(name = "idx_member_username_lower", columnList = "username_lower"),
+		@Index(name = "idx_member_team_id", columnList = "team_id") })
+@NamedEntityGraph(name = Member.WITH_TEAM, attributeNodes = @NamedAttributeNode("team"))
 public class Member {
 
+	public static final String WITH_TEAM = "Member.withTeam";
+
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = "member_seq_generator")
+	@GenericGenerator(
+			name = "member_seq_generator",
+			strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+			parameters = {
+					@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"),
+					@Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "100"),
+					@Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = BlockSequenceOptimizer.NAME) })
 	@Column(name = "member_id")
 	private Long id;
 	private String username;
 	private int age;
 
+	//대소문자 무시 검색용. username 을 소문자로 바꾼 값이며 저장/수정 시 자동으로 채워진다
+	@Setter(AccessLevel.NONE)
+	@Column(name = "username_lower")
+	private String usernameLower;
+
 	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "team_id")
 	private Team team;
@@ -52,5 +87,15 @@ public class Member {
 		this.team = team;
 		team.getMembers().add(this);
 	}
+
+	@PrePersist
+	@PreUpdate
+	private void normalizeUsername() {
+		this.usernameLower = lower(username);
+	}
+
+	public static String lower(String username) {
+		return username == null ? null : username.toLowerCase(Locale.ROOT);
+	}
 	
 }
@@ -0,0 +1,49 @@
+package jpabook.jpashop.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * username 부분 검색용 역색인. 소문자 username 의 3글자 조각(gram)마다 한 행이다.
+ * MemberNgramIndexer 가 JDBC 로 관리하며 엔티티는 테이블 생성과 Querydsl 조회에만 사용한다.
+ */
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@Entity
+@Table(name = "member_ngram", indexes = @Index(name = "idx_member_ngram_member_id", columnList = "member_id"))
+@IdClass(MemberNgram.Key.class)
+public class MemberNgram {
+
+	public static final int N = 3;
+
+	@Id
+	@Column(length = N)
+	private String gram;
+
+	@Id
+	@Column(name = "member_id")
+	private Long memberId;
+
+	@EqualsAndHashCode
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Key implements Serializable {
+
+		private String gram;
+		private Long memberId;
+	}
+}
@@ -3,10 +3,22 @@ package jpabook.jpashop.entity;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import jpabook.jpashop.entity.id.BlockSequenceOptimizer;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -19,12 +31,28 @@ import lombok.ToString;
 @Getter
 @Setter
 @Entity
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Team.CACHE_REGION)
 public class Team {
 	
-	@Id @GeneratedValue
+	//2차 캐시는 cache 프로필에서만 켜진다. (application-cache.yml, ehcache.xml)
+	public static final String CACHE_REGION = "team";
+	
+	@Id
+	@GeneratedValue(generator = "team_seq_generator")
+	@GenericGenerator(
+			name = "team_seq_generator",
+			strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+			parameters = {
+					@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "team_seq"),
+					@Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+					@Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = BlockSequenceOptimizer.NAME) })
 	private Long id;
 	private String name;
 	
+	//여러 팀의 members 를 초기화할 때 팀 id 를 IN 으로 묶어 한 번에 조회한다
+	@BatchSize(size = 100)
 	@OneToMany(mappedBy = "team")
 	private List<Member> members = new ArrayList<>();
 	
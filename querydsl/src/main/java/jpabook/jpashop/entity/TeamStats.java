@@ -0,0 +1,31 @@
+package jpabook.jpashop.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 팀별 회원 통계 요약. TeamStatsMaintainer 가 회원 저장/팀 이동/삭제를 트랜잭션 커밋 직전에 증분으로 반영한다.
+ * 회원이 없는 팀은 minAge, maxAge 가 null 이다.
+ */
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@Entity
+@Table(name = "team_stats")
+public class TeamStats {
+
+	@Id
+	@Column(name = "team_id")
+	private Long teamId;
+	private long memberCount;
+	private long ageSum;
+	private Integer minAge;
+	private Integer maxAge;
+}
@@ -0,0 +1,98 @@
+package jpabook.jpashop.entity.id;
+
+import java.io.Serializable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+
+/**
+ * 시퀀스에서 incrementSize 크기의 블록을 예약하고, 블록 안의 번호는 AtomicLong으로 락 없이 나눠준다.
+ * 시퀀스 값 v 는 [v, v + incrementSize) 블록을 의미한다. (pooled-lo 방식)
+ *
+ * <p>SequenceStyleGenerator 의 optimizer 파라미터로 이 클래스 이름을 넘겨서 사용한다.
+ * 블록은 DB 시퀀스에서 받으므로 재시작해도 번호가 겹치지 않고, 쓰지 못한 나머지 번호만 비게 된다.
+ */
+public class BlockSequenceOptimizer implements Optimizer {
+
+	public static final String NAME = "jpabook.jpashop.entity.id.BlockSequenceOptimizer";
+
+	private static final Block EMPTY = new Block(null, 0, 0);
+
+	private final Class<?> returnClass;
+	private final int incrementSize;
+
+	private final AtomicReference<Block> current = new AtomicReference<>(EMPTY);
+	//동시에 블록이 소진되어 설치하지 못한 블록은 버리지 않고 다음 교체 때 사용한다
+	private final Queue<Block> spares = new ConcurrentLinkedQueue<>();
+
+	//OptimizerFactory 가 리플렉션으로 호출하는 생성자
+	public BlockSequenceOptimizer(Class<?> returnClass, int incrementSize) {
+		if (incrementSize < 1) {
+			throw new IllegalArgumentException("incrementSize는 1 이상이어야 합니다. incrementSize = " + incrementSize);
+		}
+		this.returnClass = returnClass;
+		this.incrementSize = incrementSize;
+	}
+
+	@Override
+	public Serializable generate(AccessCallback callback) {
+		while (true) {
+			Block block = current.get();
+			long value = block.next.getAndIncrement();
+			if (value < block.limit) {
+				return toIdentifier(value);
+			}
+
+			Block fresh = spares.poll();
+			if (fresh == null) {
+				IntegralDataTypeHolder source = callback.getNextValue();
+				long lo = source.makeValue().longValue();
+				fresh = new Block(source, lo, lo + incrementSize);
+			}
+
+			if (!current.compareAndSet(block, fresh)) {
+				spares.offer(fresh);
+			}
+		}
+	}
+
+	private Serializable toIdentifier(long value) {
+		return IdentifierGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+				.initialize(value)
+				.makeValue();
+	}
+
+	@Override
+	public IntegralDataTypeHolder getLastSourceValue() {
+		return current.get().source;
+	}
+
+	@Override
+	public int getIncrementSize() {
+		return incrementSize;
+	}
+
+	@Override
+	public boolean applyIncrementSizeToSourceValues() {
+		return true;
+	}
+
+	private static final class Block {
+
+		private final IntegralDataTypeHolder source;
+		private final AtomicLong next;
+		private final long limit;
+
+		private Block(IntegralDataTypeHolder source, long lo, long limit) {
+			this.source = source;
+			this.next = new AtomicLong(lo);
+			this.limit = limit;
+		}
+	}
+}
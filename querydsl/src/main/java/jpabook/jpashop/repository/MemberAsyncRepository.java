@@ -0,0 +1,51 @@
+package jpabook.jpashop.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.support.AsyncQueryExecutor;
+
+/**
+ * MemberJpaRepository 의 비동기 버전. 호출마다 실행기 스레드에서 별도의 읽기 전용 트랜잭션으로 실행한다.
+ * 동시에 실행할 수 있는 수를 넘으면 RejectedExecutionException 으로 실패한 future 를 돌려준다.
+ *
+ * <p>반환된 엔티티는 준영속 상태이므로 지연 로딩 연관관계는 사용할 수 없다.
+ */
+@Repository
+public class MemberAsyncRepository {
+
+	private final MemberJpaRepository memberJpaRepository;
+	private final AsyncQueryExecutor executor;
+	private final TransactionTemplate readOnly;
+
+	public MemberAsyncRepository(MemberJpaRepository memberJpaRepository, AsyncQueryExecutor executor,
+			PlatformTransactionManager transactionManager) {
+		this.memberJpaRepository = memberJpaRepository;
+		this.executor = executor;
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+		this.readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	public CompletableFuture<Optional<Member>> findById(Long id){
+		return submit(() -> memberJpaRepository.findById(id));
+	}
+
+	public CompletableFuture<List<MemberTeamDto>> serachByBuilder(MemberSerachCondition condition){
+		return submit(() -> memberJpaRepository.serachByBuilder(condition));
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> query) {
+		return executor.submit(() -> readOnly.execute(status -> query.get()));
+	}
+}
@@ -0,0 +1,464 @@
+package jpabook.jpashop.repository;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.support.HibernateListeners;
+
+/**
+ * 분석용 회원 스냅샷. 회원 전체를 메모리에 열(column) 단위 배열로 들고 MemberSerachCondition 조건과 나이 집계를 DB 없이 계산한다.
+ *
+ * <ul>
+ * <li>열: long[] id, int[] 나이, long[] 팀 id(없으면 0), int[] username 코드 (사전 인코딩)
+ * <li>비트맵 인덱스: 팀 id 별, 나이 값별 BitSet. 나이 범위는 해당 나이 비트맵을 OR 한다
+ * <li>username 조건과 집계는 64행(long 한 개) 단위로 나눠 모든 코어에서 병렬로 스캔한다
+ * </ul>
+ *
+ * <p>처음 사용할 때 전체를 읽고, 이후에는 트랜잭션에서 바뀐 Member/Team 을 커밋 후에 한 번에 다시 읽어 반영한다.
+ * 전체 읽기는 호출한 쪽 트랜잭션과 별개인 새 트랜잭션에서 하므로 커밋된 데이터만 들어간다.
+ * 벌크 연산이나 JDBC 로 바꾼 데이터는 반영되지 않으므로 refresh() 로 다시 읽거나 invalidate() 한다.
+ * member.snapshot.enabled=true 일 때만 만들어진다.
+ */
+@ConditionalOnProperty(name = "member.snapshot.enabled", havingValue = "true")
+@Component
+public class MemberColumnarSnapshot implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final int FETCH_SIZE = 10_000;
+	private static final long NO_TEAM = 0;
+	private static final int REREAD_SIZE = 1000;
+
+	private final EntityManagerFactory emf;
+	private final MemberJpaRepository memberJpaRepository;
+	private final TeamJpaRepository teamJpaRepository;
+	private final TransactionTemplate loader;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	//아래 필드는 lock 으로 보호한다
+	private boolean loaded;
+	private int size;
+	private long[] ids = new long[0];
+	private int[] ages = new int[0];
+	private long[] teamIds = new long[0];
+	private int[] usernameCodes = new int[0];
+	private final BitSet alive = new BitSet();
+	private final Map<Long, Integer> rowOfId = new HashMap<>();
+	private final List<String> usernames = new ArrayList<>();
+	private final Map<String, Integer> usernameCodeOf = new HashMap<>();
+	private final Map<Long, String> teamNames = new HashMap<>();
+	private final Map<Long, BitSet> teamIndex = new HashMap<>();
+	private final TreeMap<Integer, BitSet> ageIndex = new TreeMap<>();
+
+	public MemberColumnarSnapshot(EntityManagerFactory emf, MemberJpaRepository memberJpaRepository,
+			TeamJpaRepository teamJpaRepository, PlatformTransactionManager transactionManager) {
+		this.emf = emf;
+		this.memberJpaRepository = memberJpaRepository;
+		this.teamJpaRepository = teamJpaRepository;
+		//호출한 쪽 트랜잭션의 커밋 전 데이터를 읽지 않도록 새 트랜잭션을 연다. replica 로 가지 않도록 읽기/쓰기 트랜잭션을 사용한다
+		this.loader = new TransactionTemplate(transactionManager);
+		this.loader.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@PostConstruct
+	void register() {
+		HibernateListeners.append(emf, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+	}
+
+	public int count(MemberSerachCondition condition) {
+		return read(() -> filter(condition).cardinality());
+	}
+
+	public IntSummaryStatistics ageStatistics(MemberSerachCondition condition) {
+		return read(() -> {
+			long[] words = filter(condition).toLongArray();
+			return IntStream.range(0, words.length).parallel()
+					.collect(IntSummaryStatistics::new,
+							(statistics, word) -> forEachRow(words, word, row -> statistics.accept(ages[row])),
+							IntSummaryStatistics::combine);
+		});
+	}
+
+	//팀이 없는 회원은 제외한다
+	public Map<Long, IntSummaryStatistics> ageStatisticsByTeam(MemberSerachCondition condition) {
+		return read(() -> {
+			long[] words = filter(condition).toLongArray();
+			return IntStream.range(0, words.length).parallel()
+					.collect(HashMap<Long, IntSummaryStatistics>::new,
+							(byTeam, word) -> forEachRow(words, word, row -> {
+								if (teamIds[row] != NO_TEAM) {
+									byTeam.computeIfAbsent(teamIds[row], teamId -> new IntSummaryStatistics()).accept(ages[row]);
+								}
+							}),
+							(left, right) -> right.forEach((teamId, statistics) -> left.merge(teamId, statistics, (a, b) -> {
+								a.combine(b);
+								return a;
+							})));
+		});
+	}
+
+	//serachByBuilder 와 같은 결과. 순서는 스냅샷에 들어온 순서다
+	public List<MemberTeamDto> search(MemberSerachCondition condition) {
+		return read(() -> {
+			BitSet rows = filter(condition);
+			List<MemberTeamDto> result = new ArrayList<>(rows.cardinality());
+			for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+				long teamId = teamIds[row];
+				result.add(new MemberTeamDto(ids[row], usernames.get(usernameCodes[row]), ages[row],
+						teamId == NO_TEAM ? null : teamId, teamId == NO_TEAM ? null : teamNames.get(teamId)));
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * DB 에서 전체를 다시 읽는다. 읽는 동안 조회와 변경 반영은 기다린다.
+	 */
+	public void refresh() {
+		lock.writeLock().lock();
+		try {
+			clear();
+			loader.executeWithoutResult(status -> {
+				try (Stream<MemberTeamDto> rows = memberJpaRepository.serachStream(new MemberSerachCondition(), FETCH_SIZE)) {
+					rows.forEach(row -> {
+						if (row.getTeamId() != null) {
+							teamNames.put(row.getTeamId(), row.getTeamName());
+						}
+						upsert(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId());
+					});
+				}
+			});
+			loaded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 들고 있는 데이터를 버린다. 다음 조회 때 전체를 다시 읽는다.
+	 */
+	public void invalidate() {
+		lock.writeLock().lock();
+		try {
+			clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		return read(alive::cardinality);
+	}
+
+	private <T> T read(Supplier<T> query) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			return query.get();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void ensureLoaded() {
+		lock.readLock().lock();
+		try {
+			if (loaded) {
+				return;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		refresh();
+	}
+
+	private BitSet filter(MemberSerachCondition condition) {
+		BitSet result = (BitSet) alive.clone();
+		if (hasText(condition.getTaemName())) {
+			BitSet teams = new BitSet();
+			teamNames.forEach((teamId, name) -> {
+				if (condition.getTaemName().equals(name)) {
+					teams.or(teamIndex.getOrDefault(teamId, new BitSet()));
+				}
+			});
+			result.and(teams);
+		}
+		if (condition.getAgeGoe() != null || condition.getAgeLoe() != null) {
+			int from = condition.getAgeGoe() == null ? Integer.MIN_VALUE : condition.getAgeGoe();
+			int to = condition.getAgeLoe() == null ? Integer.MAX_VALUE : condition.getAgeLoe();
+			BitSet ageRange = new BitSet();
+			if (from <= to) {
+				ageIndex.subMap(from, true, to, true).values().forEach(ageRange::or);
+			}
+			result.and(ageRange);
+		}
+		if (hasText(condition.getUsername())) {
+			Integer code = usernameCodeOf.get(condition.getUsername());
+			if (code == null) {
+				return new BitSet();
+			}
+			result.and(scan(row -> usernameCodes[row] == code));
+		}
+		return result;
+	}
+
+	//64행씩 나눠 병렬로 검사한다. 각 작업은 자기 long 한 칸만 쓴다
+	private BitSet scan(IntPredicate matches) {
+		long[] words = new long[(size + 63) / 64];
+		IntStream.range(0, words.length).parallel().forEach(word -> {
+			long bits = 0;
+			int end = Math.min(size, (word + 1) * 64);
+			for (int row = word * 64; row < end; row++) {
+				if (matches.test(row)) {
+					bits |= 1L << (row & 63);
+				}
+			}
+			words[word] = bits;
+		});
+		return BitSet.valueOf(words);
+	}
+
+	private static void forEachRow(long[] words, int word, IntConsumer action) {
+		long bits = words[word];
+		while (bits != 0) {
+			action.accept(word * 64 + Long.numberOfTrailingZeros(bits));
+			bits &= bits - 1;
+		}
+	}
+
+	//같은 변경이 두 번 반영되어도 결과가 같도록 insert 도 upsert 로 처리한다
+	private void upsert(Long id, String username, int age, Long teamId) {
+		Integer row = rowOfId.get(id);
+		if (row == null) {
+			row = size++;
+			ensureCapacity(size);
+			rowOfId.put(id, row);
+			ids[row] = id;
+		} else if (alive.get(row)) {
+			unindex(row);
+		}
+		ages[row] = age;
+		teamIds[row] = teamId == null ? NO_TEAM : teamId;
+		usernameCodes[row] = usernameCodeOf.computeIfAbsent(username, name -> {
+			usernames.add(name);
+			return usernames.size() - 1;
+		});
+		alive.set(row);
+		ageIndex.computeIfAbsent(age, key -> new BitSet()).set(row);
+		if (teamId != null) {
+			teamIndex.computeIfAbsent(teamId, key -> new BitSet()).set(row);
+		}
+	}
+
+	//삭제된 행은 비트만 끄고 자리는 refresh 때 정리된다
+	private void delete(Long id) {
+		Integer row = rowOfId.get(id);
+		if (row != null && alive.get(row)) {
+			unindex(row);
+			alive.clear(row);
+		}
+	}
+
+	private void unindex(int row) {
+		BitSet ageRows = ageIndex.get(ages[row]);
+		if (ageRows != null) {
+			ageRows.clear(row);
+		}
+		BitSet teamRows = teamIndex.get(teamIds[row]);
+		if (teamRows != null) {
+			teamRows.clear(row);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length) {
+			return;
+		}
+		int length = Math.max(capacity, Math.max(16, ids.length * 2));
+		ids = Arrays.copyOf(ids, length);
+		ages = Arrays.copyOf(ages, length);
+		teamIds = Arrays.copyOf(teamIds, length);
+		usernameCodes = Arrays.copyOf(usernameCodes, length);
+	}
+
+	private void clear() {
+		loaded = false;
+		size = 0;
+		ids = new long[0];
+		ages = new int[0];
+		teamIds = new long[0];
+		usernameCodes = new int[0];
+		alive.clear();
+		rowOfId.clear();
+		usernames.clear();
+		usernameCodeOf.clear();
+		teamNames.clear();
+		teamIndex.clear();
+		ageIndex.clear();
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		onWrite(event.getSession(), event.getEntity(), event.getId());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		onWrite(event.getSession(), event.getEntity(), event.getId());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		onWrite(event.getSession(), event.getEntity(), event.getId());
+	}
+
+	//바뀐 id 만 트랜잭션 단위로 모아 두고 커밋되면 한 번에 반영한다. 롤백되면 버린다
+	private void onWrite(EventSource session, Object entity, Serializable id) {
+		if (!(entity instanceof Member) && !(entity instanceof Team)) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			Changes changes = new Changes();
+			changes.add(entity, (Long) id);
+			apply(changes);
+			return;
+		}
+		//REQUIRES_NEW 로 열린 트랜잭션은 영속성 컨텍스트가 따로 있으므로 세션을 키로 쓴다
+		Changes changes = (Changes) TransactionSynchronizationManager.getResource(session);
+		if (changes == null) {
+			Changes created = new Changes();
+			TransactionSynchronizationManager.bindResource(session, created);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					apply(created);
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(session);
+				}
+			});
+			changes = created;
+		}
+		changes.add(entity, (Long) id);
+	}
+
+	/**
+	 * 바뀐 행을 DB 에서 다시 읽어 반영한다. 이벤트 시점의 값을 쓰면 같은 회원을 바꾼 두 트랜잭션의 afterCommit 순서가
+	 * 커밋 순서와 달라 예전 값이 남을 수 있다. 쓰기 잠금을 잡은 채로 읽으므로 나중에 반영하는 쪽이 항상 최신 커밋을 본다.
+	 * 아직 읽지 않았으면 처음 읽을 때 반영되므로 버린다.
+	 */
+	private void apply(Changes changes) {
+		lock.writeLock().lock();
+		try {
+			if (!loaded) {
+				return;
+			}
+			loader.executeWithoutResult(status -> {
+				for (List<Long> chunk : chunks(changes.teamIds)) {
+					Map<Long, String> names = new HashMap<>();
+					teamJpaRepository.findAllById(chunk).forEach(team -> names.put(team.getId(), team.getName()));
+					for (Long teamId : chunk) {
+						if (names.containsKey(teamId)) {
+							teamNames.put(teamId, names.get(teamId));
+						} else {
+							teamNames.remove(teamId);
+						}
+					}
+				}
+				for (List<Long> chunk : chunks(changes.memberIds)) {
+					Set<Long> deleted = new HashSet<>(chunk);
+					for (MemberTeamDto row : memberJpaRepository.serachByIds(chunk)) {
+						if (row.getTeamId() != null) {
+							teamNames.put(row.getTeamId(), row.getTeamName());
+						}
+						upsert(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId());
+						deleted.remove(row.getMemberId());
+					}
+					deleted.forEach(this::delete);
+				}
+			});
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	//IN 절이 너무 길어지지 않게 나눠서 읽는다
+	private static List<List<Long>> chunks(Set<Long> ids) {
+		List<List<Long>> chunks = new ArrayList<>();
+		List<Long> chunk = new ArrayList<>(REREAD_SIZE);
+		for (Long id : ids) {
+			chunk.add(id);
+			if (chunk.size() == REREAD_SIZE) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>(REREAD_SIZE);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	//한 트랜잭션에서 바뀐 회원, 팀 id
+	private static class Changes {
+
+		final Set<Long> memberIds = new LinkedHashSet<>();
+		final Set<Long> teamIds = new LinkedHashSet<>();
+
+		void add(Object entity, Long id) {
+			if (entity instanceof Member) {
+				memberIds.add(id);
+			} else {
+				teamIds.add(id);
+			}
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
@@ -2,32 +2,92 @@ package jpabook.jpashop.repository;
 
 
 import static jpabook.jpashop.entity.QMember.member;
+import static jpabook.jpashop.entity.QMemberNgram.memberNgram;
 import static jpabook.jpashop.entity.QTeam.team;
 import static org.springframework.util.StringUtils.hasText;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.graph.GraphSemantic;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.querydsl.core.BooleanBuilder;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
 
+import jpabook.jpashop.dto.MemberBulkResult;
+import jpabook.jpashop.dto.MemberKeysetCursor;
+import jpabook.jpashop.dto.MemberKeysetOrder;
+import jpabook.jpashop.dto.MemberKeysetSlice;
 import jpabook.jpashop.dto.MemberSerachCondition;
 import jpabook.jpashop.dto.MemberTeamDto;
-import jpabook.jpashop.dto.QMemberTeamDto;
 import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.MemberSearchQueryCache.Template;
+import jpabook.jpashop.repository.sql.MemberSqlRepository;
+import jpabook.jpashop.repository.sql.MemberSqlRepository.Engine;
+import jpabook.jpashop.repository.support.AsyncQueryExecutor;
+import jpabook.jpashop.repository.support.SqlStatementCounter;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * 조회 메서드는 읽기 전용 트랜잭션으로 실행한다. replica 가 설정되어 있으면 replica 에서 읽는다. (ReplicaRoutingConfig)
+ */
 @RequiredArgsConstructor
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 	
+	//application.yml 의 hibernate.jdbc.batch_size 와 맞춘다
+	private static final int BATCH_SIZE = 100;
+	//부분 검색에서 가장 드문 조각의 후보를 한 번에 가져오는 수
+	private static final int NGRAM_CANDIDATES = 1000;
+	
 	private final EntityManager em;
 	private final JPAQueryFactory queryFactory;
+	private final MemberSearchQueryCache searchQueryCache;
+	private final MemberSearchResultCache searchResultCache;
+	private final TeamStatsMaintainer teamStatsMaintainer;
+	private final MemberSqlRepository memberSqlRepository;
+	private final AsyncQueryExecutor asyncQueryExecutor;
+	private final PlatformTransactionManager transactionManager;
+	private final SqlStatementCounter statementCounter;
 	
 	//@RequiredArgsConstructor 이걸로 아래꺼 처리함
 //	public MemberJpaRepository(EntityManager em,JPAQueryFactory queryFactory) {
@@ -36,8 +96,29 @@ public class MemberJpaRepository {
 //		this.queryFactory = queryFactory;
 //	}
 	
+	@Transactional
 	public void save(Member member) {
 		em.persist(member);
+		searchResultCache.onWrite();
+	}
+	
+	/**
+	 * 대량 저장. BATCH_SIZE 마다 flush/clear 해서 insert를 JDBC 배치로 묶고 영속성 컨텍스트가 커지지 않게 한다.
+	 * clear 하므로 호출 전에 관리하던 엔티티도 모두 준영속 상태가 된다.
+	 */
+	@Transactional
+	public void saveAll(Iterable<Member> members) {
+		searchResultCache.onWrite();
+		int count = 0;
+		for(Member member : members) {
+			em.persist(member);
+			if(++count % BATCH_SIZE == 0) {
+				em.flush();
+				em.clear();
+			}
+		}
+		em.flush();
+		em.clear();
 	}
 	
 	public Optional<Member> findById(Long id){
@@ -55,6 +136,131 @@ public class MemberJpaRepository {
 				.getResultList();
 	}
 	
+	/**
+	 * 대소문자를 무시하고 username 으로 조회한다.
+	 * lower(username) 으로 비교하면 인덱스를 쓸 수 없으므로 미리 소문자로 저장한 username_lower 컬럼을 조회한다.
+	 */
+	public List<Member> findByUsernameIgnoreCase(String username){
+		return queryFactory
+					.selectFrom(member)
+					.where(member.usernameLower.eq(Member.lower(username)))
+					.fetch();
+	}
+	
+	/**
+	 * username 접두어 검색. (대소문자 무시) username_lower 인덱스를 범위 조회하므로 풀 스캔이 없다.
+	 */
+	public List<MemberTeamDto> serachByUsernamePrefix(String prefix, int limit){
+		if(!hasText(prefix)) {
+			return new ArrayList<>();
+		}
+		return usernameQuery(member.usernameLower.startsWith(Member.lower(prefix)), limit)
+					.orderBy(member.usernameLower.asc(), member.id.asc())
+					.fetch();
+	}
+	
+	/**
+	 * username 부분 검색. (대소문자 무시, LIKE '%keyword%' 와 같은 결과)
+	 * keyword 의 3글자 조각을 모두 가진 회원을 member_ngram 에서 찾고, 조각 순서가 맞는지 LIKE 로 한 번 더 확인한다.
+	 * keyword 가 3글자보다 짧으면 조각을 만들 수 없으므로 접두어 검색으로 대신한다.
+	 *
+	 * <p>가장 드문 조각의 회원 id 를 NGRAM_CANDIDATES 개씩 id 순으로 가져와, 드문 조각부터 차례로 가진 회원만 남긴다.
+	 * 흔한 조각의 색인 전체를 읽지 않고, limit 만큼 찾으면 멈춘다.
+	 */
+	public List<MemberTeamDto> serachByUsernameContains(String keyword, int limit){
+		String lower = Member.lower(keyword);
+		Set<String> grams = MemberNgramIndexer.grams(lower);
+		if(grams.isEmpty()) {
+			return serachByUsernamePrefix(keyword, limit);
+		}
+		if(limit < 1) {
+			throw new IllegalArgumentException("limit는 1 이상이어야 합니다. limit = " + limit);
+		}
+		
+		List<String> byFrequency = gramsByFrequency(grams);
+		//색인에 없는 조각이 있으면 모두 가진 회원도 없다
+		if(byFrequency.size() < grams.size()) {
+			return new ArrayList<>();
+		}
+		
+		List<MemberTeamDto> result = new ArrayList<>();
+		long lastId = Long.MIN_VALUE;
+		while(result.size() < limit) {
+			List<Long> page = queryFactory
+						.select(memberNgram.memberId)
+						.from(memberNgram)
+						.where(memberNgram.gram.eq(byFrequency.get(0)), memberNgram.memberId.gt(lastId))
+						.orderBy(memberNgram.memberId.asc())
+						.limit(NGRAM_CANDIDATES)
+						.fetch();
+			if(page.isEmpty()) {
+				break;
+			}
+			lastId = page.get(page.size() - 1);
+			
+			List<Long> candidates = page;
+			for(String gram : byFrequency.subList(1, byFrequency.size())) {
+				if(candidates.isEmpty()) {
+					break;
+				}
+				candidates = queryFactory
+							.select(memberNgram.memberId)
+							.from(memberNgram)
+							.where(memberNgram.gram.eq(gram), memberNgram.memberId.in(candidates))
+							.fetch();
+			}
+			if(!candidates.isEmpty()) {
+				result.addAll(usernameQuery(member.id.in(candidates).and(member.usernameLower.contains(lower)), limit - result.size())
+							.orderBy(member.id.asc())
+							.fetch());
+			}
+			if(page.size() < NGRAM_CANDIDATES) {
+				break;
+			}
+		}
+		return result;
+	}
+	
+	//색인에 있는 조각을 회원 수가 적은 순서로 반환한다
+	private List<String> gramsByFrequency(Set<String> grams) {
+		return queryFactory
+					.select(memberNgram.gram)
+					.from(memberNgram)
+					.where(memberNgram.gram.in(grams))
+					.groupBy(memberNgram.gram)
+					.orderBy(memberNgram.memberId.count().asc(), memberNgram.gram.asc())
+					.fetch();
+	}
+	
+	private JPAQuery<MemberTeamDto> usernameQuery(BooleanExpression where, int limit){
+		if(limit < 1) {
+			throw new IllegalArgumentException("limit는 1 이상이어야 합니다. limit = " + limit);
+		}
+		return queryFactory
+					.select(MemberSearchQuery.projection())
+					.from(member)
+					.leftJoin(member.team, team)
+					.where(where)
+					.limit(limit);
+	}
+	
+	/**
+	 * username_lower 컬럼이 추가되기 전에 저장된 회원이나 JDBC 로 넣은 회원의 값을 채운다.
+	 * 채운 행 수를 반환한다.
+	 */
+	@Transactional
+	public long backfillUsernameLower() {
+		searchResultCache.onWrite();
+		em.flush();
+		long count = queryFactory
+					.update(member)
+					.set(member.usernameLower, member.username.lower())
+					.where(member.usernameLower.isNull(), member.username.isNotNull())
+					.execute();
+		em.clear();
+		return count;
+	}
+	
 	public List<Member> findAll_Querydsl(){
 		return queryFactory
 					.select(member)
@@ -71,37 +277,497 @@ public class MemberJpaRepository {
 				.fetch();
 	}
 	
+	/**
+	 * 읽기 전용 조회. 엔티티를 읽기 전용으로 올려서 로딩 시점 스냅샷을 보관하지 않고 flush 때 변경 감지도 하지 않는다.
+	 * 조회 전에 flush 하지도 않으므로 같은 트랜잭션에서 flush 하지 않은 변경은 보이지 않는다.
+	 * 반환된 엔티티를 수정해도 DB 에 반영되지 않으니 수정할 엔티티는 findAll 로 조회한다.
+	 */
+	public List<Member> findAll_ReadOnly(){
+		return readOnlyHints(queryFactory.selectFrom(member)).fetch();
+	}
+	
+	public List<Member> findByUsername_ReadOnly(String username){
+		return readOnlyHints(queryFactory.selectFrom(member).where(member.username.eq(username))).fetch();
+	}
+	
+	/**
+	 * 대용량 읽기 전용 조회. StatelessSession 으로 읽어서 영속성 컨텍스트(1차 캐시, 스냅샷)를 전혀 쓰지 않는다.
+	 * 현재 트랜잭션의 커넥션을 그대로 쓰며, team 은 초기화할 수 없는 프록시이므로 id 만 사용할 수 있다.
+	 * 트랜잭션 안에서 호출해야 하며 사용 후 반드시 close 해야 커서와 세션이 반환된다. (try-with-resources)
+	 */
+	@Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+	public Stream<Member> findAllStateless(int fetchSize){
+		
+		Session session = em.unwrap(Session.class);
+		StatelessSession statelessSession = session.doReturningWork(
+				connection -> session.getSessionFactory().openStatelessSession(connection));
+		
+		return statelessSession.createQuery("select m from Member m", Member.class)
+				.setFetchSize(checkFetchSize(fetchSize))
+				.setReadOnly(true)
+				.stream()
+				.onClose(statelessSession::close);
+	}
+	
+	/**
+	 * team 을 페치 조인해서 함께 조회한다. getTeam() 을 사용해도 추가 쿼리가 나가지 않는다.
+	 */
+	public List<Member> findAllWithTeam_Querydsl(){
+		return queryFactory
+					.selectFrom(member)
+					.leftJoin(member.team, team).fetchJoin()
+					.fetch();
+	}
+	
+	public List<Member> findByUsernameWithTeam_Querydsl(String username){
+		return queryFactory
+					.selectFrom(member)
+					.leftJoin(member.team, team).fetchJoin()
+					.where(member.username.eq(username))
+					.fetch();
+	}
+	
+	/**
+	 * 엔티티 그래프(Member.withTeam)로 team 을 함께 조회한다.
+	 */
+	public List<Member> findAllWithTeam_EntityGraph(){
+		return em.createQuery("select m from Member m", Member.class)
+				.setHint(GraphSemantic.FETCH.getJpaHintName(), em.getEntityGraph(Member.WITH_TEAM))
+				.getResultList();
+	}
+	
+	/**
+	 * 대용량 조회용. forward-only 커서로 fetchSize 만큼씩 읽어오고, 다음 행으로 넘어가면 이전 엔티티는 detach 한다.
+	 * 트랜잭션 안에서 호출해야 하며 사용 후 반드시 close 해야 커서가 반환된다. (try-with-resources)
+	 */
+	@Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+	public Stream<Member> findAllStream_Querydsl(int fetchSize){
+		
+		CloseableIterator<Member> cursor = queryFactory
+					.select(member)
+					.from(member)
+					.setHint(QueryHints.FETCH_SIZE, checkFetchSize(fetchSize))
+					.setHint(QueryHints.READ_ONLY, true)
+					.iterate();
+		
+		return toStream(new DetachingIterator<>(em, cursor), cursor);
+	}
+	
+	/**
+	 * serachByBuilder의 스트리밍 버전. DTO 조회라 영속성 컨텍스트에 쌓이는 엔티티가 없다.
+	 * 트랜잭션 안에서 호출해야 하며 사용 후 반드시 close 해야 커서가 반환된다. (try-with-resources)
+	 */
+	@Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+	public Stream<MemberTeamDto> serachStream(MemberSerachCondition condition, int fetchSize){
+		
+		CloseableIterator<MemberTeamDto> cursor = serachQuery(condition)
+					.setHint(QueryHints.FETCH_SIZE, checkFetchSize(fetchSize))
+					.iterate();
+		
+		return toStream(cursor, cursor);
+	}
+	
+	/**
+	 * id 로 조회한다. 없는 id 는 결과에서 빠진다. MemberColumnarSnapshot 이 커밋된 변경을 다시 읽을 때 사용한다.
+	 */
+	public List<MemberTeamDto> serachByIds(Collection<Long> ids){
+		return serachQuery(new MemberSerachCondition())
+					.where(member.id.in(ids))
+					.fetch();
+	}
+	
+	/**
+	 * 같은 조건의 결과는 MemberSearchResultCache 에서 돌려준다.
+	 */
 	public List<MemberTeamDto> serachByBuilder(MemberSerachCondition condition){
+		Engine engine = memberSqlRepository.getDefaultEngine();
+		return searchResultCache.get(condition, c -> serachByBuilder(c, engine));
+	}
+	
+	/**
+	 * 실행 방식을 지정한 검색. 결과 캐시를 거치지 않는다.
+	 * SQL 은 MemberSqlRepository 로 JDBC 에서 바로 읽으므로 쓰기 트랜잭션이면 먼저 flush 한다. (JPQL 의 AUTO flush 대신)
+	 */
+	public List<MemberTeamDto> serachByBuilder(MemberSerachCondition condition, Engine engine){
+		if(engine == Engine.JPQL) {
+			return serachByQuery(condition);
+		}
+		if(TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			em.flush();
+		}
+		return memberSqlRepository.serach(condition);
+	}
+	
+	/**
+	 * 조건 모양별로 캐시해 둔 JPQL 을 재사용하고 파라미터만 바인딩한다. (MemberSearchQueryCache)
+	 */
+	private List<MemberTeamDto> serachByQuery(MemberSerachCondition condition){
+		
+		Template template = searchQueryCache.template(MemberSearchQueryCache.shapeOf(condition));
+		TypedQuery<Object[]> query = em.createQuery(template.getJpql(), Object[].class);
+		template.bind(query, condition);
 		
-		BooleanBuilder builder = new BooleanBuilder();
-		if(hasText(condition.getUsername())) {
-			builder.and(member.username.eq(condition.getUsername()));
+		List<Object[]> rows = query.getResultList();
+		List<MemberTeamDto> result = new ArrayList<>(rows.size());
+		for(Object[] row : rows) {
+			result.add(new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]));
+		}
+		return result;
+	}
+	
+	/**
+	 * 페이징 조회. 첫 페이지나 마지막 페이지가 pageSize보다 적게 조회되면 전체 개수를 알 수 있으므로 count 쿼리를 생략한다.
+	 */
+	public Page<MemberTeamDto> serachPage(MemberSerachCondition condition, Pageable pageable){
+		return PageableExecutionUtils.getPage(serachContent(condition, pageable), pageable, () -> serachCount(condition));
+	}
+	
+	/**
+	 * serachPage 와 결과는 같고, count 쿼리를 다른 커넥션에서 content 쿼리와 동시에 실행한다.
+	 * 페이지 응답 시간이 두 쿼리의 합이 아니라 느린 쪽에 가까워진다.
+	 *
+	 * <p>이미 트랜잭션 안에서 호출하면 같은 트랜잭션에서 봐야 하므로 serachPage 처럼 순서대로 실행한다.
+	 * 실행기가 가득 차 있으면 count 도 호출 스레드에서 실행한다.
+	 *
+	 * <p>count 를 기다린 경우 실행기 스레드에서 센 SQL 문장 수를 호출 스레드의 SqlStatementCounter 에 더한다.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Page<MemberTeamDto> serachPageConcurrent(MemberSerachCondition condition, Pageable pageable){
+		if(TransactionSynchronizationManager.isActualTransactionActive()) {
+			return serachPage(condition, pageable);
 		}
 		
-		if(hasText(condition.getTaemName())) {
-			builder.and(team.name.eq(condition.getTaemName()));
+		AtomicLong countStatements = new AtomicLong();
+		CompletableFuture<Long> count = asyncQueryExecutor.submit(() -> {
+			long before = statementCounter.current();
+			try {
+				return readOnly(() -> serachCount(condition));
+			} finally {
+				countStatements.set(statementCounter.current() - before);
+			}
+		});
+		List<MemberTeamDto> content;
+		try {
+			content = readOnly(() -> serachContent(condition, pageable));
+		} catch (RuntimeException e) {
+			count.cancel(false);
+			throw e;
 		}
-		if(condition.getAgeGoe() != null) {
-			builder.and(member.age.goe(condition.getAgeGoe()));
+		
+		//count 가 필요 없는 페이지(마지막 페이지 등)면 결과를 기다리지 않는다
+		//취소해도 실행기의 자리는 작업 쪽에서 반납되고, 아직 시작 전이면 count 를 실행하지 않는다 (AsyncQueryExecutor.submit)
+		Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+			long total = joinCount(count, condition);
+			statementCounter.add(countStatements.get());
+			return total;
+		});
+		count.cancel(false);
+		return page;
+	}
+	
+	private long joinCount(CompletableFuture<Long> count, MemberSerachCondition condition) {
+		try {
+			return count.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RejectedExecutionException) {
+				return readOnly(() -> serachCount(condition));
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
 		}
+	}
+	
+	private <T> T readOnly(Supplier<T> query) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+		return transactionTemplate.execute(status -> query.get());
+	}
+	
+	private List<MemberTeamDto> serachContent(MemberSerachCondition condition, Pageable pageable){
+		return contentQuery(condition, pageable).fetch();
+	}
+	
+	JPAQuery<MemberTeamDto> contentQuery(MemberSerachCondition condition, Pageable pageable){
+		return serachQuery(condition)
+					.orderBy(member.id.asc())
+					.offset(pageable.getOffset())
+					.limit(pageable.getPageSize());
+	}
+	
+	/**
+	 * 팀 이름 조건이 없으면 조인 없이 member만 count 한다. (MemberSearchQuery.countFrom)
+	 */
+	public long serachCount(MemberSerachCondition condition) {
+		Long count = countQuery(condition).fetchOne();
+		return count == null ? 0 : count;
+	}
+	
+	JPAQuery<Long> countQuery(MemberSerachCondition condition){
+		return MemberSearchQuery.countFrom(queryFactory.select(member.count()), condition);
+	}
+	
+	/**
+	 * 키셋(seek) 페이징. offset 대신 마지막으로 읽은 행 이후만 조회하므로 페이지 깊이와 상관없이 비용이 같다.
+	 * cursor가 null이면 첫 페이지를 조회한다.
+	 */
+	public MemberKeysetSlice serachByKeyset(MemberSerachCondition condition, String cursor, int size, MemberKeysetOrder order){
 		
-		if(condition.getAgeLoe() != null) {
-			builder.and(member.age.loe(condition.getAgeLoe()));
+		if(size < 1) {
+			throw new IllegalArgumentException("size는 1 이상이어야 합니다. size = " + size);
 		}
 		
-		return queryFactory
-					.select(new QMemberTeamDto(
-							member.id.as("memberId"),
-							member.username,
-							member.age,
-							team.id.as("teamId"),
-							team.name.as("teamName")
-							))
-					.from(member)
-					.leftJoin(member.team, team)
-					.where(builder)
+		List<MemberTeamDto> result = keysetQuery(condition, cursor == null ? null : MemberKeysetCursor.decode(cursor, order), size, order)
 					.fetch();
-					
+		
+		if(result.size() <= size) {
+			return new MemberKeysetSlice(result, null);
+		}
+		
+		List<MemberTeamDto> content = new ArrayList<>(result.subList(0, size));
+		String nextCursor = MemberKeysetCursor.of(content.get(size - 1), order).encode();
+		return new MemberKeysetSlice(content, nextCursor);
+	}
+	
+	JPAQuery<MemberTeamDto> keysetQuery(MemberSerachCondition condition, MemberKeysetCursor cursor, int size, MemberKeysetOrder order){
+		JPAQuery<MemberTeamDto> query = serachQuery(condition);
+		if(cursor != null) {
+			query.where(keysetAfter(cursor));
+		}
+		return query
+					.orderBy(keysetOrderBy(order))
+					.limit(size + 1); //다음 페이지 존재 여부 확인용으로 한 건 더 조회
+	}
+	
+	/**
+	 * ageGoe 이상인 회원의 나이를 1 증가. 벌크 연산은 영속성 컨텍스트를 거치지 않으므로 실행 후 비운다.
+	 */
+	@Transactional
+	public long bulkAgePlus(int ageGoe) {
+		searchResultCache.onWrite();
+		em.flush();
+		long count = queryFactory
+					.update(member)
+					.set(member.age, member.age.add(1))
+					.where(member.age.goe(ageGoe))
+					.execute();
+		teamStatsMaintainer.rebuild();
+		em.clear();
+		return count;
+	}
+	
+	@Transactional
+	public long bulkDeleteByAgeGt(int ageGt) {
+		searchResultCache.onWrite();
+		em.flush();
+		long count = queryFactory
+					.delete(member)
+					.where(member.age.gt(ageGt))
+					.execute();
+		teamStatsMaintainer.rebuild();
+		em.clear();
+		return count;
+	}
+	
+	/**
+	 * bulkAgePlus 를 회원 id 구간 chunkSize 단위로 나눠 실행한다. 청크마다 커밋하므로 한 번에 잡는 행 잠금이 청크 크기로 제한된다.
+	 * 영속성 컨텍스트에 있던 대상 회원은 다시 읽어서(refresh) DB 와 맞춘다.
+	 *
+	 * <p>맞출 수 있는 것은 스레드에 묶인 영속성 컨텍스트에 있는 회원뿐이다. 트랜잭션 밖에서 open-in-view 없이 호출하면
+	 * 청크마다 새 영속성 컨텍스트를 쓰므로 맞출 회원이 없고, 호출 전에 읽은 회원은 이미 준영속이라 옛 값을 그대로 가진다.
+	 *
+	 * <p>이미 트랜잭션 안에서 호출하면 그 트랜잭션에 참여하므로 청크마다 커밋되지 않고, 잠금은 바깥 트랜잭션이 끝날 때 풀린다.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public MemberBulkResult bulkAgePlusChunked(int ageGoe, int chunkSize) {
+		return bulkChunked(member.age.goe(ageGoe), chunkSize,
+				where -> queryFactory
+							.update(member)
+							.set(member.age, member.age.add(1))
+							.where(where)
+							.execute(),
+				m -> m.getAge() >= ageGoe, em::refresh);
+	}
+	
+	/**
+	 * bulkDeleteByAgeGt 의 청크 버전. 영속성 컨텍스트에 있던 삭제 대상 회원은 준영속 상태로 만든다.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public MemberBulkResult bulkDeleteByAgeGtChunked(int ageGt, int chunkSize) {
+		return bulkChunked(member.age.gt(ageGt), chunkSize,
+				where -> queryFactory
+							.delete(member)
+							.where(where)
+							.execute(),
+				m -> m.getAge() > ageGt, em::detach);
+	}
+	
+	/**
+	 * 1. flush 후 영속성 컨텍스트에서 대상 회원을 찾아 둔다. flush 했으므로 엔티티 값이 DB 와 같아서 조건을 메모리에서 판단할 수 있다.
+	 * 2. 대상 id 의 최소/최대를 구하고 [min, max] 를 chunkSize 구간으로 나눠 구간마다 트랜잭션을 실행한다.
+	 * 3. 팀 통계를 다시 만들고, 찾아 둔 회원을 sync 로 맞춘다. 청크가 실패해도 실행한다.
+	 */
+	private MemberBulkResult bulkChunked(BooleanExpression where, int chunkSize, Function<BooleanExpression, Long> execute,
+			Predicate<Member> affected, Consumer<Member> sync) {
+		
+		if(chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다. chunkSize = " + chunkSize);
+		}
+		//replica 로 가지 않도록 읽기/쓰기 트랜잭션을 사용한다
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		
+		long start = System.nanoTime();
+		List<Member> stale = transactionTemplate.execute(status -> {
+			em.flush();
+			return managedMembers(affected);
+		});
+		Tuple range = transactionTemplate.execute(status -> queryFactory
+					.select(member.id.min(), member.id.max())
+					.from(member)
+					.where(where)
+					.fetchOne());
+		
+		long rows = 0;
+		int chunks = 0;
+		long maxChunkNanos = 0;
+		Long minId = range == null ? null : range.get(member.id.min());
+		Long maxId = range == null ? null : range.get(member.id.max());
+		try {
+			if(minId != null) {
+				for(long lo = minId; lo <= maxId; lo += chunkSize) {
+					BooleanExpression chunk = where.and(member.id.between(lo, Math.min(lo + chunkSize - 1, maxId)));
+					long chunkStart = System.nanoTime();
+					Long chunkRows = transactionTemplate.execute(status -> {
+						searchResultCache.onWrite();
+						return execute.apply(chunk);
+					});
+					maxChunkNanos = Math.max(maxChunkNanos, System.nanoTime() - chunkStart);
+					rows += chunkRows;
+					chunks++;
+				}
+			}
+		} finally {
+			//중간 청크가 실패해도 앞 청크는 이미 커밋되었으므로 통계와 영속성 컨텍스트는 항상 맞춘다
+			transactionTemplate.executeWithoutResult(status -> {
+				teamStatsMaintainer.rebuild();
+				stale.forEach(sync);
+			});
+		}
+		return new MemberBulkResult(rows, chunks, System.nanoTime() - start, maxChunkNanos);
+	}
+	
+	//트랜잭션 밖에서 open-in-view 없이 호출하면 이 트랜잭션만의 새 영속성 컨텍스트라 항상 비어 있다
+	private List<Member> managedMembers(Predicate<Member> affected) {
+		List<Member> result = new ArrayList<>();
+		for(Object key : em.unwrap(Session.class).getStatistics().getEntityKeys()) {
+			EntityKey entityKey = (EntityKey) key;
+			if(!entityKey.getEntityName().equals(Member.class.getName())) {
+				continue;
+			}
+			//이미 영속성 컨텍스트에 있으므로 SQL 없이 반환된다
+			Member managed = em.find(Member.class, entityKey.getIdentifier());
+			if(managed != null && affected.test(managed)) {
+				result.add(managed);
+			}
+		}
+		return result;
+	}
+	
+	//serachStream, 페이징, 키셋 검색의 공통 부분. 조인과 조건은 MemberSearchQuery 에 있다
+	JPAQuery<MemberTeamDto> serachQuery(MemberSerachCondition condition) {
+		return MemberSearchQuery.from(queryFactory.select(MemberSearchQuery.projection()), condition);
+	}
+	
+	private BooleanExpression keysetAfter(MemberKeysetCursor cursor) {
+		
+		Long lastId = cursor.getMemberId();
+		Integer lastAge = cursor.getAge();
+		
+		switch (cursor.getOrder()) {
+		case ID_ASC:
+			return member.id.gt(lastId);
+		case ID_DESC:
+			return member.id.lt(lastId);
+		case AGE_ASC:
+			return member.age.gt(lastAge)
+					.or(member.age.eq(lastAge).and(member.id.gt(lastId)));
+		case AGE_DESC:
+			return member.age.lt(lastAge)
+					.or(member.age.eq(lastAge).and(member.id.lt(lastId)));
+		default:
+			throw new IllegalArgumentException("지원하지 않는 정렬 입니다. order = " + cursor.getOrder());
+		}
+	}
+	
+	//member id를 마지막 정렬 키로 두어 같은 나이끼리도 순서가 고정되게 한다
+	private OrderSpecifier<?>[] keysetOrderBy(MemberKeysetOrder order) {
+		
+		OrderSpecifier<Long> idOrder = order.isDescending() ? member.id.desc() : member.id.asc();
+		if(!order.isAgeOrder()) {
+			return new OrderSpecifier<?>[] { idOrder };
+		}
+		OrderSpecifier<Integer> ageOrder = order.isDescending() ? member.age.desc() : member.age.asc();
+		return new OrderSpecifier<?>[] { ageOrder, idOrder };
+	}
+	
+	private static <T> JPAQuery<T> readOnlyHints(JPAQuery<T> query) {
+		return query
+				.setHint(QueryHints.READ_ONLY, true)
+				.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+	}
+	
+	private static int checkFetchSize(int fetchSize) {
+		if(fetchSize < 1) {
+			throw new IllegalArgumentException("fetchSize는 1 이상이어야 합니다. fetchSize = " + fetchSize);
+		}
+		return fetchSize;
+	}
+	
+	private static <T> Stream<T> toStream(Iterator<T> iterator, CloseableIterator<?> cursor) {
+		return StreamSupport
+					.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+					.onClose(cursor::close);
+	}
+	
+	/**
+	 * 다음 행을 꺼낼 때 직전에 반환한 엔티티를 detach 해서 영속성 컨텍스트가 커지지 않게 한다.
+	 * 마지막 엔티티는 커서를 다 읽으면 detach 된다.
+	 */
+	private static class DetachingIterator<T> implements Iterator<T> {
+		
+		private final EntityManager em;
+		private final Iterator<T> delegate;
+		private T previous;
+		
+		DetachingIterator(EntityManager em, Iterator<T> delegate) {
+			this.em = em;
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			boolean hasNext = delegate.hasNext();
+			if(!hasNext) {
+				detachPrevious();
+			}
+			return hasNext;
+		}
+		
+		@Override
+		public T next() {
+			detachPrevious();
+			previous = delegate.next();
+			return previous;
+		}
+		
+		private void detachPrevious() {
+			if(previous != null) {
+				em.detach(previous);
+				previous = null;
+			}
+		}
 	}
 	
 	
@@ -0,0 +1,216 @@
+package jpabook.jpashop.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.MemberNgram;
+import jpabook.jpashop.repository.support.HibernateListeners;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Member 가 insert/update/delete 될 때 member_ngram 을 같은 트랜잭션, 같은 커넥션에서 갱신한다.
+ * 넣을 조각은 세션에 모아 두었다가 flush 가 끝날 때 한 번의 배치로 넣는다. 삭제는 바로 실행한다.
+ * JPQL/Querydsl 벌크 삭제나 JDBC 로 넣은 회원은 반영되지 않으므로 rebuild() 로 다시 만든다.
+ * (삭제된 회원의 조각이 남아 있어도 검색 결과에는 나오지 않는다)
+ */
+@RequiredArgsConstructor
+@Component
+public class MemberNgramIndexer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+		FlushEventListener, AutoFlushEventListener {
+
+	private static final String INSERT = "insert into member_ngram (gram, member_id) values (?, ?)";
+	private static final String DELETE = "delete from member_ngram where member_id = ?";
+	private static final int BATCH_SIZE = 1000;
+
+	private final EntityManagerFactory emf;
+	private final EntityManager em;
+	//세션(트랜잭션)별로 넣을 회원 id -> 소문자 username. 트랜잭션이 끝나면 지운다
+	private final Map<SessionImplementor, Map<Long, String>> pending = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	void register() {
+		HibernateListeners.append(emf, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+		//기본 flush 리스너 뒤에 붙으므로 insert 가 모두 실행된 다음 호출된다
+		HibernateListeners.append(emf, this, EventType.FLUSH, EventType.AUTO_FLUSH);
+	}
+
+	/**
+	 * 소문자로 바꾼 username 의 N 글자 조각. 예) kimjh -> kim, imj, mjh
+	 */
+	public static Set<String> grams(String lower) {
+		Set<String> grams = new LinkedHashSet<>();
+		if (lower == null) {
+			return grams;
+		}
+		for (int i = 0; i + MemberNgram.N <= lower.length(); i++) {
+			grams.add(lower.substring(i, i + MemberNgram.N));
+		}
+		return grams;
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Member) {
+			Member member = (Member) event.getEntity();
+			queued(event.getSession()).put(member.getId(), member.getUsernameLower());
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (!(event.getEntity() instanceof Member) || !usernameChanged(event)) {
+			return;
+		}
+		Member member = (Member) event.getEntity();
+		event.getSession().doWork(connection -> delete(connection, member.getId()));
+		queued(event.getSession()).put(member.getId(), member.getUsernameLower());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Member) {
+			Long id = (Long) event.getId();
+			queued(event.getSession()).remove(id);
+			event.getSession().doWork(connection -> delete(connection, id));
+		}
+	}
+
+	@Override
+	public void onFlush(FlushEvent event) {
+		insertQueued(event.getSession());
+	}
+
+	@Override
+	public void onAutoFlush(AutoFlushEvent event) {
+		insertQueued(event.getSession());
+	}
+
+	//세션에서 처음 쌓을 때 트랜잭션이 끝나면 지우도록 등록한다. (flush 가 실패해서 남은 경우)
+	private Map<Long, String> queued(EventSource session) {
+		return pending.computeIfAbsent(session, key -> {
+			session.getActionQueue().registerProcess(
+					(AfterTransactionCompletionProcess) (success, completed) -> pending.remove(completed));
+			return new LinkedHashMap<>();
+		});
+	}
+
+	private void insertQueued(EventSource session) {
+		Map<Long, String> queued = pending.get(session);
+		if (queued == null || queued.isEmpty()) {
+			return;
+		}
+		Map<Long, String> members = new LinkedHashMap<>(queued);
+		queued.clear();
+		session.doWork(connection -> insert(connection, members));
+	}
+
+	//이전 상태를 모르면(merge 등) 항상 다시 만든다
+	private static boolean usernameChanged(PostUpdateEvent event) {
+		if (event.getOldState() == null) {
+			return true;
+		}
+		int index = event.getPersister().getEntityMetamodel().getPropertyIndex("usernameLower");
+		Object before = event.getOldState()[index];
+		Object after = event.getState()[index];
+		return before == null ? after != null : !before.equals(after);
+	}
+
+	/**
+	 * member_ngram 을 비우고 모든 회원의 조각을 다시 넣는다. 넣은 행 수를 반환한다.
+	 */
+	@Transactional
+	public long rebuild() {
+		return em.unwrap(Session.class).doReturningWork(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate("delete from member_ngram");
+			}
+			long rows = 0;
+			try (PreparedStatement select = connection.prepareStatement("select member_id, username_lower from member");
+					PreparedStatement insert = connection.prepareStatement(INSERT)) {
+				select.setFetchSize(BATCH_SIZE);
+				try (ResultSet resultSet = select.executeQuery()) {
+					int batched = 0;
+					while (resultSet.next()) {
+						long id = resultSet.getLong(1);
+						for (String gram : grams(resultSet.getString(2))) {
+							insert.setString(1, gram);
+							insert.setLong(2, id);
+							insert.addBatch();
+							rows++;
+							if (++batched == BATCH_SIZE) {
+								insert.executeBatch();
+								batched = 0;
+							}
+						}
+					}
+					insert.executeBatch();
+				}
+			}
+			return rows;
+		});
+	}
+
+	private static void insert(Connection connection, Map<Long, String> members) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+			int batched = 0;
+			for (Map.Entry<Long, String> member : members.entrySet()) {
+				for (String gram : grams(member.getValue())) {
+					statement.setString(1, gram);
+					statement.setLong(2, member.getKey());
+					statement.addBatch();
+					if (++batched == BATCH_SIZE) {
+						statement.executeBatch();
+						batched = 0;
+					}
+				}
+			}
+			if (batched > 0) {
+				statement.executeBatch();
+			}
+		}
+	}
+
+	private static void delete(Connection connection, Long id) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+			statement.setLong(1, id);
+			statement.executeUpdate();
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
@@ -0,0 +1,62 @@
+package jpabook.jpashop.repository;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.support.HibernateListeners;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Member/Team 이 insert/update/delete 되면 검색 결과 캐시를 비운다.
+ * JPQL/Querydsl 벌크 연산은 이벤트가 발생하지 않으므로 MemberJpaRepository 에서 직접 비운다.
+ */
+@RequiredArgsConstructor
+@Component
+public class MemberSearchCacheInvalidator implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private final EntityManagerFactory emf;
+	private final MemberSearchResultCache searchResultCache;
+
+	@PostConstruct
+	void register() {
+		HibernateListeners.append(emf, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		invalidate(event.getEntity());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		invalidate(event.getEntity());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		invalidate(event.getEntity());
+	}
+
+	private void invalidate(Object entity) {
+		if (entity instanceof Member || entity instanceof Team) {
+			searchResultCache.onWrite();
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
@@ -0,0 +1,78 @@
+package jpabook.jpashop.repository;
+
+import static jpabook.jpashop.entity.QMember.member;
+import static jpabook.jpashop.entity.QTeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.QMemberTeamDto;
+
+/**
+ * MemberSerachCondition 검색의 조인과 where 절. 모양별 JPQL(MemberSearchQueryCache), 페이징, 키셋, 스트림, count 가
+ * 모두 여기서 쿼리를 만들므로 조인 방식과 조건이 달라지지 않는다.
+ */
+final class MemberSearchQuery {
+
+	private MemberSearchQuery() {
+	}
+
+	//MemberTeamDto 생성자 순서
+	static Expression<?>[] columns() {
+		return new Expression<?>[] { member.id, member.username, member.age, team.id, team.name };
+	}
+
+	static QMemberTeamDto projection() {
+		return new QMemberTeamDto(
+				member.id.as("memberId"),
+				member.username,
+				member.age,
+				team.id.as("teamId"),
+				team.name.as("teamName"));
+	}
+
+	/**
+	 * from member + team 조인 + 조건.
+	 * 팀 이름 조건이 있으면 팀이 없는 회원은 어차피 빠지므로 inner join 으로 팀(idx_team_name)부터 읽을 수 있게 한다.
+	 */
+	static <T> JPAQuery<T> from(JPAQuery<T> query, MemberSerachCondition condition) {
+		query.from(member);
+		if (hasText(condition.getTaemName())) {
+			query.join(member.team, team);
+		} else {
+			query.leftJoin(member.team, team);
+		}
+		return query.where(where(condition));
+	}
+
+	/**
+	 * count 용. member -> team 은 다대일이라 조인해도 행 수가 변하지 않으므로 팀 이름 조건이 있을 때만 inner join 한다.
+	 */
+	static <T> JPAQuery<T> countFrom(JPAQuery<T> query, MemberSerachCondition condition) {
+		query.from(member);
+		if (hasText(condition.getTaemName())) {
+			query.join(member.team, team);
+		}
+		return query.where(where(condition));
+	}
+
+	static BooleanBuilder where(MemberSerachCondition condition) {
+		BooleanBuilder builder = new BooleanBuilder();
+		if (hasText(condition.getUsername())) {
+			builder.and(member.username.eq(condition.getUsername()));
+		}
+		if (hasText(condition.getTaemName())) {
+			builder.and(team.name.eq(condition.getTaemName()));
+		}
+		if (condition.getAgeGoe() != null) {
+			builder.and(member.age.goe(condition.getAgeGoe()));
+		}
+		if (condition.getAgeLoe() != null) {
+			builder.and(member.age.loe(condition.getAgeLoe()));
+		}
+		return builder;
+	}
+}
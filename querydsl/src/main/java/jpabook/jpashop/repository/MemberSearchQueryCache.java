@@ -0,0 +1,162 @@
+package jpabook.jpashop.repository;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.Query;
+
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+
+/**
+ * MemberSerachCondition 은 조건 4개의 사용 여부에 따라 16가지 모양(shape)만 나온다.
+ * 모양별로 JPQL 을 한 번만 만들어 두고, 호출 때는 파라미터만 바인딩한다.
+ * 같은 문자열을 쓰므로 Hibernate 의 쿼리 플랜 캐시도 항상 적중한다.
+ * JPQL 은 직접 쓰지 않고 다른 검색 쿼리와 같은 MemberSearchQuery 로 만든다.
+ */
+@Component
+public class MemberSearchQueryCache {
+
+	public static final int USERNAME = 1;
+	public static final int TEAM_NAME = 1 << 1;
+	public static final int AGE_GOE = 1 << 2;
+	public static final int AGE_LOE = 1 << 3;
+
+	private static final int SHAPES = 1 << 4;
+
+	private final AtomicReferenceArray<Template> templates = new AtomicReferenceArray<>(SHAPES);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public static int shapeOf(MemberSerachCondition condition) {
+		int shape = 0;
+		if (hasText(condition.getUsername())) {
+			shape |= USERNAME;
+		}
+		if (hasText(condition.getTaemName())) {
+			shape |= TEAM_NAME;
+		}
+		if (condition.getAgeGoe() != null) {
+			shape |= AGE_GOE;
+		}
+		if (condition.getAgeLoe() != null) {
+			shape |= AGE_LOE;
+		}
+		return shape;
+	}
+
+	//메트릭 태그 등에 쓰는 이름. 예) username+teamName, 조건이 없으면 none
+	public static String describe(int shape) {
+		if (shape == 0) {
+			return "none";
+		}
+		StringJoiner joiner = new StringJoiner("+");
+		if ((shape & USERNAME) != 0) {
+			joiner.add("username");
+		}
+		if ((shape & TEAM_NAME) != 0) {
+			joiner.add("teamName");
+		}
+		if ((shape & AGE_GOE) != 0) {
+			joiner.add("ageGoe");
+		}
+		if ((shape & AGE_LOE) != 0) {
+			joiner.add("ageLoe");
+		}
+		return joiner.toString();
+	}
+
+	public Template template(int shape) {
+		Template template = templates.get(shape);
+		if (template != null) {
+			hits.increment();
+			return template;
+		}
+		misses.increment();
+		templates.compareAndSet(shape, null, build(shape));
+		return templates.get(shape);
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * MemberSearchQuery 로 만든 쿼리를 한 번 직렬화한다. 조건 값 자리에 모양별로 서로 다른 값을 넣어 두고
+	 * 직렬화된 위치 파라미터(?1, ?2 ..) 번호를 기억해 두었다가 호출 때 실제 값을 바인딩한다.
+	 */
+	private static Template build(int shape) {
+		MemberSerachCondition placeholder = new MemberSerachCondition();
+		placeholder.setUsername((shape & USERNAME) != 0 ? "username" : null);
+		placeholder.setTaemName((shape & TEAM_NAME) != 0 ? "teamName" : null);
+		placeholder.setAgeGoe((shape & AGE_GOE) != 0 ? 1 : null);
+		placeholder.setAgeLoe((shape & AGE_LOE) != 0 ? 2 : null);
+
+		JPAQuery<Tuple> query = MemberSearchQuery.from(new JPAQuery<Void>().select(MemberSearchQuery.columns()), placeholder);
+		JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+		serializer.serialize(query.getMetadata(), false, null);
+		Map<Object, String> labels = serializer.getConstantToLabel();
+
+		return new Template(serializer.toString(),
+				position(labels, placeholder.getUsername()),
+				position(labels, placeholder.getTaemName()),
+				position(labels, placeholder.getAgeGoe()),
+				position(labels, placeholder.getAgeLoe()));
+	}
+
+	private static int position(Map<Object, String> labels, Object placeholder) {
+		return placeholder == null ? 0 : Integer.parseInt(labels.get(placeholder));
+	}
+
+	/**
+	 * 모양 하나의 JPQL. select 절은 MemberSearchQuery.columns() 순서의 Object[] 이다.
+	 */
+	public static final class Template {
+
+		private final String jpql;
+		//위치 파라미터 번호. 조건이 없으면 0
+		private final int username;
+		private final int teamName;
+		private final int ageGoe;
+		private final int ageLoe;
+
+		private Template(String jpql, int username, int teamName, int ageGoe, int ageLoe) {
+			this.jpql = jpql;
+			this.username = username;
+			this.teamName = teamName;
+			this.ageGoe = ageGoe;
+			this.ageLoe = ageLoe;
+		}
+
+		public String getJpql() {
+			return jpql;
+		}
+
+		public void bind(Query query, MemberSerachCondition condition) {
+			bind(query, username, condition.getUsername());
+			bind(query, teamName, condition.getTaemName());
+			bind(query, ageGoe, condition.getAgeGoe());
+			bind(query, ageLoe, condition.getAgeLoe());
+		}
+
+		private static void bind(Query query, int position, Object value) {
+			if (position > 0) {
+				query.setParameter(position, value);
+			}
+		}
+	}
+}
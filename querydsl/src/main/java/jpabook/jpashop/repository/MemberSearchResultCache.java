@@ -0,0 +1,171 @@
+package jpabook.jpashop.repository;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.repository.support.ReplicaRoutingDataSource;
+import jpabook.jpashop.repository.support.ReplicaRoutingDataSource.Target;
+
+/**
+ * serachByBuilder 결과 캐시. 조건 값이 같으면 같은 결과를 돌려준다.
+ *
+ * <p>캐시 무게는 결과 행 수이고 전체 행 수(max-weight)를 넘으면 오래 안 쓴 항목부터 제거된다.
+ * 한 번에 max-entry-rows 보다 많이 조회된 결과는 캐시하지 않는다.
+ *
+ * <p>Member/Team 이 변경되면(onWrite) 전체를 비우고, 그 트랜잭션이 끝날 때 한 번 더 비운다.
+ * 쓰기 트랜잭션 안에서는 자기가 바꾼 데이터를 보고 커밋 전 데이터가 캐시에 들어가지 않도록 캐시를 사용하지 않는다.
+ * 캐시는 트랜잭션 밖이나 읽기 전용 트랜잭션에서만 쓰인다.
+ *
+ * <p>replica 를 사용하면(ReplicaRoutingConfig) replica 에서 읽은 결과는 캐시하지 않는다.
+ * 복제가 늦으면 무효화 직후에 예전 데이터가 캐시에 들어가 expire-after-write 동안 남기 때문이다.
+ */
+@Component
+public class MemberSearchResultCache {
+
+	private final boolean enabled;
+	private final int maxEntryRows;
+	private final Cache<Key, List<MemberTeamDto>> cache;
+	//무효화 될 때마다 증가. 조회 도중 무효화 되었으면 결과를 캐시에 넣지 않는다
+	private final AtomicLong generation = new AtomicLong();
+	private final Optional<ReplicaRoutingDataSource> replicaRouting;
+
+	@Autowired
+	public MemberSearchResultCache(
+			@Value("${member.search-cache.enabled:true}") boolean enabled,
+			@Value("${member.search-cache.max-weight:100000}") long maxWeight,
+			@Value("${member.search-cache.max-entry-rows:1000}") int maxEntryRows,
+			@Value("${member.search-cache.expire-after-write:10m}") Duration expireAfterWrite,
+			Optional<ReplicaRoutingDataSource> replicaRouting) {
+		this.enabled = enabled;
+		this.replicaRouting = replicaRouting;
+		this.maxEntryRows = maxEntryRows;
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxWeight)
+				.weigher((Key key, List<MemberTeamDto> rows) -> rows.size() + 1)
+				.expireAfterWrite(expireAfterWrite)
+				.recordStats()
+				.build();
+	}
+
+	//replica 없이 사용한다
+	MemberSearchResultCache(boolean enabled, long maxWeight, int maxEntryRows, Duration expireAfterWrite) {
+		this(enabled, maxWeight, maxEntryRows, expireAfterWrite, Optional.empty());
+	}
+
+	public List<MemberTeamDto> get(MemberSerachCondition condition, Function<MemberSerachCondition, List<MemberTeamDto>> loader) {
+		if (!enabled || inReadWriteTransaction() || TransactionSynchronizationManager.hasResource(this)) {
+			return loader.apply(condition);
+		}
+
+		Key key = Key.of(condition);
+		List<MemberTeamDto> cached = cache.getIfPresent(key);
+		if (cached != null) {
+			return copyOf(cached);
+		}
+
+		long loadedGeneration = generation.get();
+		boolean fromReplica = readsFromReplica();
+		List<MemberTeamDto> result = loader.apply(condition);
+		if (!fromReplica && result.size() <= maxEntryRows && loadedGeneration == generation.get()) {
+			cache.put(key, copyOf(result));
+			if (loadedGeneration != generation.get()) {
+				cache.invalidate(key);
+			}
+		}
+		return result;
+	}
+
+	//쓰기 트랜잭션은 아직 flush 되지 않은 변경(onWrite 전)이 있을 수 있으므로 캐시 대신 조회해서 JPQL auto flush 로 보게 한다
+	private static boolean inReadWriteTransaction() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	private boolean readsFromReplica() {
+		return replicaRouting.map(routing -> routing.currentTarget() == Target.REPLICA).orElse(false);
+	}
+
+	/**
+	 * Member/Team 변경 시 호출. 트랜잭션 안이면 커밋/롤백 후에도 다시 비운다.
+	 */
+	public void onWrite() {
+		invalidateAll();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()
+				|| TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+
+		TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(MemberSearchResultCache.this);
+				invalidateAll();
+			}
+		});
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	//hit/miss/eviction 수
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+
+	//제거 작업은 비동기로 처리되므로 테스트에서 바로 반영할 때 사용
+	void cleanUp() {
+		cache.cleanUp();
+	}
+
+	//MemberTeamDto 는 setter 가 있으므로 캐시한 객체를 그대로 내보내지 않는다
+	private static List<MemberTeamDto> copyOf(List<MemberTeamDto> rows) {
+		List<MemberTeamDto> copy = new ArrayList<>(rows.size());
+		for (MemberTeamDto row : rows) {
+			copy.add(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId(), row.getTeamName()));
+		}
+		return copy;
+	}
+
+	@lombok.Value
+	static class Key {
+
+		String username;
+		String teamName;
+		Integer ageGoe;
+		Integer ageLoe;
+
+		//serachByBuilder 와 같이 빈 문자열은 조건 없음으로 본다
+		static Key of(MemberSerachCondition condition) {
+			return new Key(
+					hasText(condition.getUsername()) ? condition.getUsername() : null,
+					hasText(condition.getTaemName()) ? condition.getTaemName() : null,
+					condition.getAgeGoe(),
+					condition.getAgeLoe());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package jpabook.jpashop.repository;
+
+import static jpabook.jpashop.entity.QTeam.team;
+import static jpabook.jpashop.entity.QTeamStats.teamStats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.dto.QTeamStatsDto;
+import jpabook.jpashop.dto.TeamStatsDto;
+import jpabook.jpashop.entity.Team;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Repository
+@Transactional(readOnly = true)
+public class TeamJpaRepository {
+	
+	public static final String TEAM_BY_NAME_REGION = "teamByName";
+	
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final TeamStatsMaintainer teamStatsMaintainer;
+	
+	@Transactional
+	public void save(Team team) {
+		em.persist(team);
+	}
+	
+	//cache 프로필에서는 2차 캐시에서 먼저 찾는다
+	public Optional<Team> findById(Long id){
+		return Optional.ofNullable(em.find(Team.class, id));
+	}
+	
+	public List<Team> findAllById(Collection<Long> ids){
+		return queryFactory
+					.selectFrom(team)
+					.where(team.id.in(ids))
+					.fetch();
+	}
+	
+	/**
+	 * 팀 이름 조회는 쿼리 캐시를 사용한다. team 테이블이 JPQL/Querydsl 로 변경되면 Hibernate 가 자동으로 무효화한다.
+	 */
+	public Optional<Team> findByName(String name){
+		Team findTeam = queryFactory
+					.selectFrom(team)
+					.where(team.name.eq(name))
+					.orderBy(team.id.asc())
+					.setHint(QueryHints.CACHEABLE, true)
+					.setHint(QueryHints.CACHE_REGION, TEAM_BY_NAME_REGION)
+					.fetchFirst();
+		return Optional.ofNullable(findTeam);
+	}
+	
+	/**
+	 * 팀 목록과 각 팀의 members 를 함께 조회한다.
+	 * members 는 @BatchSize 로 팀 100개씩 IN 조회하므로 쿼리 수는 1 + (팀 수 / 100) 이다.
+	 * 컬렉션 페치 조인과 달리 팀 행이 중복되지 않고 팀 목록에 페이징을 걸 수 있다.
+	 */
+	public List<Team> findAllWithMembers(){
+		List<Team> teams = queryFactory
+					.selectFrom(team)
+					.orderBy(team.id.asc())
+					.fetch();
+		teams.forEach(t -> Hibernate.initialize(t.getMembers()));
+		return teams;
+	}
+	
+	/**
+	 * 팀별 회원 수, 나이 합/평균/최소/최대. 회원을 집계하지 않고 team_stats 요약에서 읽는다. (TeamStatsMaintainer)
+	 * 요약 행이 없는 팀은 나오지 않는다. 시작할 때 TeamStatsMaintainer.fillMissing() 이 채운다.
+	 * 쓰기 트랜잭션 안이면 그 트랜잭션에서 쌓인 변경을 먼저 반영한다.
+	 */
+	public Optional<TeamStatsDto> findStats(Long teamId){
+		teamStatsMaintainer.applyPending();
+		return Optional.ofNullable(statsQuery()
+					.where(team.id.eq(teamId))
+					.fetchOne());
+	}
+	
+	public List<TeamStatsDto> findAllStats(){
+		teamStatsMaintainer.applyPending();
+		return statsQuery()
+					.orderBy(team.id.asc())
+					.fetch();
+	}
+	
+	private JPAQuery<TeamStatsDto> statsQuery(){
+		return queryFactory
+					.select(new QTeamStatsDto(
+							team.id,
+							team.name,
+							teamStats.memberCount,
+							teamStats.ageSum,
+							teamStats.minAge,
+							teamStats.maxAge))
+					.from(teamStats)
+					.join(team).on(team.id.eq(teamStats.teamId));
+	}
+	
+	/**
+	 * Hibernate 를 거치지 않고 JDBC 등으로 team 을 변경한 경우 직접 호출한다.
+	 */
+	public void evictCache() {
+		SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictEntityData(Team.class);
+		sessionFactory.getCache().evictQueryRegion(TEAM_BY_NAME_REGION);
+	}
+	
+	//hibernate.generate_statistics 가 켜져 있어야 집계된다
+	public CacheRegionStatistics teamCacheStatistics() {
+		return statistics().getDomainDataRegionStatistics(Team.CACHE_REGION);
+	}
+	
+	public CacheRegionStatistics teamByNameCacheStatistics() {
+		return statistics().getQueryRegionStatistics(TEAM_BY_NAME_REGION);
+	}
+	
+	private Statistics statistics() {
+		return em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+	}
+
+}
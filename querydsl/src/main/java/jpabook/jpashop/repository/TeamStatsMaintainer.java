@@ -0,0 +1,340 @@
+package jpabook.jpashop.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.query.NativeQuery;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.entity.TeamStats;
+import jpabook.jpashop.repository.support.HibernateListeners;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * team_stats 를 회원 insert/update/delete 에 맞춰 증분으로 갱신한다.
+ * 변경은 트랜잭션 동안 팀별로 모아 두었다가 커밋 직전에 팀마다 한 번만 반영한다.
+ * 회원 한 명마다 SQL 을 보내지 않으므로 JDBC 배치가 끊기지 않고, 요약 행도 커밋 직전에만 잠긴다.
+ * 회원 수, 나이 합은 더하고 빼기만 하면 되고, 최소/최대 나이는 빠지는 회원이 경계값일 때만 그 팀을 다시 계산한다.
+ *
+ * <p>JPQL/Querydsl 벌크 연산과 JDBC 로 넣은 데이터는 이벤트가 없으므로 rebuild() 로 전체를 다시 만든다.
+ * 요약 행이 없는 팀은 시작할 때 fillMissing() 이 채운다.
+ */
+@RequiredArgsConstructor
+@Component
+public class TeamStatsMaintainer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final String INSERT_TEAM =
+			"insert into team_stats (team_id, member_count, age_sum, min_age, max_age) values (?, 0, 0, null, null)";
+	private static final String DELETE_TEAM = "delete from team_stats where team_id = ?";
+	private static final String APPLY =
+			"update team_stats set member_count = member_count + ?, age_sum = age_sum + ?,"
+			+ " min_age = case when min_age is null or min_age > ? then ? else min_age end,"
+			+ " max_age = case when max_age is null or max_age < ? then ? else max_age end"
+			+ " where team_id = ?";
+	private static final String APPLY_SUM =
+			"update team_stats set member_count = member_count + ?, age_sum = age_sum + ? where team_id = ?";
+	private static final String BOUNDS = "select min_age, max_age from team_stats where team_id = ?";
+	private static final String RECOMPUTE =
+			"update team_stats set"
+			+ " member_count = (select count(*) from member m where m.team_id = ?),"
+			+ " age_sum = (select coalesce(sum(m.age), 0) from member m where m.team_id = ?),"
+			+ " min_age = (select min(m.age) from member m where m.team_id = ?),"
+			+ " max_age = (select max(m.age) from member m where m.team_id = ?)"
+			+ " where team_id = ?";
+	private static final String REBUILD =
+			"insert into team_stats (team_id, member_count, age_sum, min_age, max_age)"
+			+ " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+			+ " from team t left join member m on m.team_id = t.id"
+			+ " group by t.id";
+	private static final String FILL_MISSING =
+			"insert into team_stats (team_id, member_count, age_sum, min_age, max_age)"
+			+ " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+			+ " from team t left join member m on m.team_id = t.id"
+			+ " where not exists (select 1 from team_stats s where s.team_id = t.id)"
+			+ " group by t.id";
+
+	private final EntityManagerFactory emf;
+	private final EntityManager em;
+	//세션(트랜잭션)별로 쌓인 팀별 변경. 팀 id 순서로 반영해서 트랜잭션끼리 잠금 순서가 엇갈리지 않게 한다
+	private final Map<SessionImplementor, Map<Long, Delta>> pending = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	void register() {
+		HibernateListeners.append(emf, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		Object entity = event.getEntity();
+		if (entity instanceof Team) {
+			delta(event.getSession(), ((Team) entity).getId()).created = true;
+		} else if (entity instanceof Member && ((Member) entity).getTeam() != null) {
+			Member member = (Member) entity;
+			delta(event.getSession(), teamId(member.getTeam())).add(member.getAge());
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (!(event.getEntity() instanceof Member)) {
+			return;
+		}
+		Member member = (Member) event.getEntity();
+		Long newTeamId = teamId(member.getTeam());
+		int newAge = member.getAge();
+
+		//이전 상태를 모르면(merge 등) 현재 팀만 다시 계산한다
+		if (event.getOldState() == null) {
+			if (newTeamId != null) {
+				delta(event.getSession(), newTeamId).recompute = true;
+			}
+			return;
+		}
+
+		EntityPersister persister = event.getPersister();
+		Long oldTeamId = teamId(event.getOldState()[persister.getEntityMetamodel().getPropertyIndex("team")]);
+		int oldAge = (Integer) event.getOldState()[persister.getEntityMetamodel().getPropertyIndex("age")];
+		if (oldAge == newAge && (oldTeamId == null ? newTeamId == null : oldTeamId.equals(newTeamId))) {
+			return;
+		}
+		//같은 팀에서 나이만 바뀌면 빼고 더한 결과가 나이 차이만 남는다
+		if (oldTeamId != null) {
+			delta(event.getSession(), oldTeamId).remove(oldAge);
+		}
+		if (newTeamId != null) {
+			delta(event.getSession(), newTeamId).add(newAge);
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		Object entity = event.getEntity();
+		if (entity instanceof Team) {
+			delta(event.getSession(), (Long) event.getId()).deleted = true;
+		} else if (entity instanceof Member) {
+			EntityPersister persister = event.getPersister();
+			Long teamId = teamId(event.getDeletedState()[persister.getEntityMetamodel().getPropertyIndex("team")]);
+			int age = (Integer) event.getDeletedState()[persister.getEntityMetamodel().getPropertyIndex("age")];
+			if (teamId != null) {
+				delta(event.getSession(), teamId).remove(age);
+			}
+		}
+	}
+
+	/**
+	 * 현재 트랜잭션에서 쌓인 변경을 지금 반영한다. 같은 트랜잭션에서 team_stats 를 읽기 전에 호출한다. (TeamJpaRepository)
+	 * 반영한 팀의 요약 행은 그때부터 커밋까지 잠긴다.
+	 */
+	public void applyPending() {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return;
+		}
+		em.flush();
+		apply(em.unwrap(SessionImplementor.class));
+	}
+
+	/**
+	 * team_stats 를 비우고 team/member 에서 다시 집계한다. 벌크 연산 후 같은 트랜잭션에서 호출한다.
+	 */
+	@Transactional
+	public int rebuild() {
+		em.flush();
+		//flush 까지의 변경은 다시 집계에 포함되므로 쌓인 변경은 버린다
+		pending.remove(em.unwrap(SessionImplementor.class));
+		em.createNativeQuery("delete from team_stats")
+				.unwrap(NativeQuery.class)
+				.addSynchronizedEntityClass(TeamStats.class)
+				.executeUpdate();
+		return em.createNativeQuery(REBUILD)
+				.unwrap(NativeQuery.class)
+				.addSynchronizedEntityClass(TeamStats.class)
+				.executeUpdate();
+	}
+
+	/**
+	 * 요약 행이 없는 팀의 행을 만든다. team_stats 가 생기기 전부터 있던 팀이나 JDBC 로 넣은 팀이 해당된다.
+	 * 애플리케이션이 시작될 때 한 번 실행되며, 만든 행 수를 반환한다.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional
+	public int fillMissing() {
+		return em.createNativeQuery(FILL_MISSING)
+				.unwrap(NativeQuery.class)
+				.addSynchronizedEntityClass(TeamStats.class)
+				.executeUpdate();
+	}
+
+	//세션에서 처음 변경이 생길 때 커밋 직전 반영과 종료 시 정리를 등록한다
+	private Delta delta(EventSource session, Long teamId) {
+		Map<Long, Delta> deltas = pending.computeIfAbsent(session, key -> {
+			ActionQueue actionQueue = session.getActionQueue();
+			actionQueue.registerProcess((BeforeTransactionCompletionProcess) this::apply);
+			actionQueue.registerProcess((AfterTransactionCompletionProcess) (success, completed) -> pending.remove(completed));
+			return new TreeMap<>();
+		});
+		return deltas.computeIfAbsent(teamId, key -> new Delta());
+	}
+
+	//flush 가 끝난 뒤라 member 테이블에는 변경이 모두 반영되어 있다
+	private void apply(SessionImplementor session) {
+		Map<Long, Delta> deltas = pending.remove(session);
+		if (deltas == null) {
+			return;
+		}
+		session.doWork(connection -> {
+			for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+				applyDelta(connection, entry.getKey(), entry.getValue());
+			}
+		});
+	}
+
+	/**
+	 * 회원 수, 나이 합은 더하기만 하고 최소/최대 나이는 추가된 나이로 넓힌다.
+	 * 빠진 나이가 경계값이었으면(또는 요약 행이 없으면) 그 팀을 다시 계산한다.
+	 */
+	private static void applyDelta(Connection connection, Long teamId, Delta delta) throws SQLException {
+		if (delta.deleted) {
+			execute(connection, DELETE_TEAM, teamId);
+			return;
+		}
+		if (delta.created) {
+			execute(connection, INSERT_TEAM, teamId);
+		}
+		boolean recompute = delta.recompute || delta.removedMin != null && boundary(connection, teamId, delta);
+		int updated;
+		if (recompute) {
+			updated = recompute(connection, teamId);
+		} else if (delta.addedMin != null) {
+			try (PreparedStatement statement = connection.prepareStatement(APPLY)) {
+				statement.setLong(1, delta.count);
+				statement.setLong(2, delta.ageSum);
+				statement.setInt(3, delta.addedMin);
+				statement.setInt(4, delta.addedMin);
+				statement.setInt(5, delta.addedMax);
+				statement.setInt(6, delta.addedMax);
+				statement.setLong(7, teamId);
+				updated = statement.executeUpdate();
+			}
+		} else {
+			try (PreparedStatement statement = connection.prepareStatement(APPLY_SUM)) {
+				statement.setLong(1, delta.count);
+				statement.setLong(2, delta.ageSum);
+				statement.setLong(3, teamId);
+				updated = statement.executeUpdate();
+			}
+		}
+		//팀이 JDBC 로 만들어져 요약 행이 없으면 만들고 다시 계산한다
+		if (updated == 0) {
+			execute(connection, INSERT_TEAM, teamId);
+			recompute(connection, teamId);
+		}
+	}
+
+	//요약 행이 없으면 true. 다시 계산하는 쪽에서 행을 만든다
+	private static boolean boundary(Connection connection, Long teamId, Delta delta) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(BOUNDS)) {
+			statement.setLong(1, teamId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next()) {
+					return true;
+				}
+				int minAge = resultSet.getInt(1);
+				boolean noMin = resultSet.wasNull();
+				int maxAge = resultSet.getInt(2);
+				return noMin || delta.removedMin <= minAge || delta.removedMax >= maxAge;
+			}
+		}
+	}
+
+	private static int recompute(Connection connection, Long teamId) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(RECOMPUTE)) {
+			for (int i = 1; i <= 5; i++) {
+				statement.setLong(i, teamId);
+			}
+			return statement.executeUpdate();
+		}
+	}
+
+	private static void execute(Connection connection, String sql, Long teamId) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setLong(1, teamId);
+			statement.executeUpdate();
+		}
+	}
+
+	//지연 로딩 프록시는 초기화하지 않고 id 만 꺼낸다
+	private static Long teamId(Object team) {
+		if (team == null) {
+			return null;
+		}
+		if (team instanceof HibernateProxy) {
+			return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+		}
+		return ((Team) team).getId();
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+
+	//한 팀에 쌓인 변경
+	private static class Delta {
+
+		boolean created;
+		boolean deleted;
+		boolean recompute;
+		long count;
+		long ageSum;
+		//추가된 나이 범위. 최소/최대를 넓힌다
+		Integer addedMin;
+		Integer addedMax;
+		//빠진 나이 범위. 경계값이면 다시 계산한다
+		Integer removedMin;
+		Integer removedMax;
+
+		void add(int age) {
+			count++;
+			ageSum += age;
+			addedMin = addedMin == null ? age : Math.min(addedMin, age);
+			addedMax = addedMax == null ? age : Math.max(addedMax, age);
+		}
+
+		void remove(int age) {
+			count--;
+			ageSum -= age;
+			removedMin = removedMin == null ? age : Math.min(removedMin, age);
+			removedMax = removedMax == null ? age : Math.max(removedMax, age);
+		}
+	}
+}
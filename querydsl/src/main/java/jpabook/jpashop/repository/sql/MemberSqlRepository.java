@@ -0,0 +1,82 @@
+package jpabook.jpashop.repository.sql;
+
+import static jpabook.jpashop.repository.sql.SMember.member;
+import static jpabook.jpashop.repository.sql.STeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+
+/**
+ * serachByBuilder 를 querydsl-sql 로 구현한 것. JPQL 번역, 영속성 컨텍스트, Hibernate 결과 변환을 거치지 않고
+ * ResultSet 을 MemberTeamDto 로 바로 만든다.
+ *
+ * <p>JDBC 로 바로 읽으므로 영속성 컨텍스트에서 아직 flush 되지 않은 변경은 보이지 않는다.
+ * MemberJpaRepository 를 통해 호출하면 쓰기 트랜잭션에서는 먼저 flush 한다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class MemberSqlRepository {
+
+	public enum Engine {
+		JPQL, SQL
+	}
+
+	private final SQLQueryFactory sqlQueryFactory;
+	private final Engine defaultEngine;
+
+	public MemberSqlRepository(SQLQueryFactory sqlQueryFactory,
+			@Value("${member.search.engine:jpql}") Engine defaultEngine) {
+		this.sqlQueryFactory = sqlQueryFactory;
+		this.defaultEngine = defaultEngine;
+	}
+
+	//member.search.engine. serachByBuilder(condition) 가 사용한다
+	public Engine getDefaultEngine() {
+		return defaultEngine;
+	}
+
+	public List<MemberTeamDto> serach(MemberSerachCondition condition) {
+		SQLQuery<MemberTeamDto> query = sqlQueryFactory
+				.select(new MemberTeamDtoProjection(member.memberId, member.username, member.age, team.id, team.name))
+				.from(member);
+		//팀 이름 조건이 있으면 JPQL 버전과 같이 inner join 으로 팀(idx_team_name)부터 읽을 수 있게 한다
+		if (hasText(condition.getTaemName())) {
+			query.join(team).on(member.teamId.eq(team.id));
+		} else {
+			query.leftJoin(team).on(member.teamId.eq(team.id));
+		}
+		return query
+				.where(usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTaemName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()))
+				.fetch();
+	}
+
+	private BooleanExpression usernameEq(String username) {
+		return hasText(username) ? member.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		return hasText(teamName) ? team.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		return ageGoe != null ? member.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		return ageLoe != null ? member.age.loe(ageLoe) : null;
+	}
+}
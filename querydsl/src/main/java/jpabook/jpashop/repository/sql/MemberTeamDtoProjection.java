@@ -0,0 +1,43 @@
+package jpabook.jpashop.repository.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import jpabook.jpashop.dto.MemberTeamDto;
+
+/**
+ * 컬럼 다섯 개를 MemberTeamDto 생성자에 바로 넘긴다.
+ * Projections.constructor 와 달리 리플렉션으로 생성자를 찾거나 호출하지 않는다.
+ */
+public class MemberTeamDtoProjection extends FactoryExpressionBase<MemberTeamDto> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Expression<?>> args;
+
+	public MemberTeamDtoProjection(Expression<Long> memberId, Expression<String> username, Expression<Integer> age,
+			Expression<Long> teamId, Expression<String> teamName) {
+		super(MemberTeamDto.class);
+		this.args = Collections.unmodifiableList(Arrays.asList(memberId, username, age, teamId, teamName));
+	}
+
+	@Override
+	public List<Expression<?>> getArgs() {
+		return args;
+	}
+
+	@Override
+	public MemberTeamDto newInstance(Object... row) {
+		return new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]);
+	}
+
+	@Override
+	public <R, C> R accept(Visitor<R, C> visitor, C context) {
+		return visitor.visit(this, context);
+	}
+}
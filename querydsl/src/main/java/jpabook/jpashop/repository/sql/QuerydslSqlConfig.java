@@ -0,0 +1,37 @@
+package jpabook.jpashop.repository.sql;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+
+import jpabook.jpashop.repository.support.SqlStatementCounter;
+
+/**
+ * JPA 와 같은 DataSource 를 쓴다. SpringConnectionProvider 는 현재 JPA 트랜잭션의 커넥션을 그대로 가져오므로
+ * 트랜잭션 안에서만 쿼리할 수 있다.
+ */
+@Configuration
+public class QuerydslSqlConfig {
+
+	@Bean
+	public SQLQueryFactory sqlQueryFactory(DataSource dataSource, SqlStatementCounter statementCounter) {
+		com.querydsl.sql.Configuration configuration = new com.querydsl.sql.Configuration(H2Templates.builder().build());
+		configuration.setExceptionTranslator(new SpringExceptionTranslator());
+		//Hibernate 의 StatementInspector 를 거치지 않으므로 실행할 때 따로 센다
+		configuration.addListener(new SQLBaseListener() {
+			@Override
+			public void preExecute(SQLListenerContext context) {
+				statementCounter.record();
+			}
+		});
+		return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+	}
+}
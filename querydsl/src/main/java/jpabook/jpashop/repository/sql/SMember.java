@@ -0,0 +1,36 @@
+package jpabook.jpashop.repository.sql;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * member 테이블의 querydsl-sql 메타모델. 검색에 쓰는 컬럼만 둔다. (Member 엔티티 매핑과 맞춘다)
+ */
+public class SMember extends RelationalPathBase<SMember> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final SMember member = new SMember("m");
+
+	public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+	public final StringPath username = createString("username");
+	public final NumberPath<Integer> age = createNumber("age", Integer.class);
+	public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+	public final PrimaryKey<SMember> primary = createPrimaryKey(memberId);
+
+	public SMember(String variable) {
+		super(SMember.class, forVariable(variable), "PUBLIC", "MEMBER");
+		addMetadata(memberId, ColumnMetadata.named("MEMBER_ID").withIndex(1).ofType(Types.BIGINT).notNull());
+		addMetadata(username, ColumnMetadata.named("USERNAME").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+		addMetadata(age, ColumnMetadata.named("AGE").withIndex(3).ofType(Types.INTEGER).notNull());
+		addMetadata(teamId, ColumnMetadata.named("TEAM_ID").withIndex(4).ofType(Types.BIGINT));
+	}
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.repository.sql;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * team 테이블의 querydsl-sql 메타모델. (Team 엔티티 매핑과 맞춘다)
+ */
+public class STeam extends RelationalPathBase<STeam> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final STeam team = new STeam("t");
+
+	public final NumberPath<Long> id = createNumber("id", Long.class);
+	public final StringPath name = createString("name");
+
+	public final PrimaryKey<STeam> primary = createPrimaryKey(id);
+
+	public STeam(String variable) {
+		super(STeam.class, forVariable(variable), "PUBLIC", "TEAM");
+		addMetadata(id, ColumnMetadata.named("ID").withIndex(1).ofType(Types.BIGINT).notNull());
+		addMetadata(name, ColumnMetadata.named("NAME").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+	}
+}
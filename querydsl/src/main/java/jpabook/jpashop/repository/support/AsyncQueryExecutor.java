@@ -0,0 +1,159 @@
+package jpabook.jpashop.repository.support;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 리포지토리 호출을 요청 스레드 밖에서 실행한다.
+ *
+ * <ul>
+ * <li>member.async.mode : auto(가상 스레드를 지원하면 사용), virtual, pool
+ * <li>member.async.max-concurrency : 동시에 DB 를 사용하는 작업 수. 커넥션 풀 크기 이하로 둔다
+ * <li>member.async.max-pending : 실행 중 + 대기 중인 작업 수. 넘으면 RejectedExecutionException 으로 즉시 실패한다
+ * </ul>
+ */
+@Slf4j
+@Component
+public class AsyncQueryExecutor implements DisposableBean {
+
+	public enum Mode {
+		AUTO, VIRTUAL, POOL
+	}
+
+	private final ExecutorService executor;
+	private final boolean virtual;
+	private final int maxConcurrency;
+	private final int maxPending;
+	private final Semaphore running;
+	private final Semaphore pending;
+
+	public AsyncQueryExecutor(
+			@Value("${member.async.mode:auto}") Mode mode,
+			@Value("${member.async.max-concurrency:10}") int maxConcurrency,
+			@Value("${member.async.max-pending:1000}") int maxPending) {
+		if (maxConcurrency < 1 || maxPending < maxConcurrency) {
+			throw new IllegalArgumentException("1 <= max-concurrency <= max-pending 이어야 합니다. max-concurrency = "
+					+ maxConcurrency + ", max-pending = " + maxPending);
+		}
+		this.maxConcurrency = maxConcurrency;
+		this.maxPending = maxPending;
+		this.running = new Semaphore(maxConcurrency);
+		this.pending = new Semaphore(maxPending);
+
+		ExecutorService virtualExecutor = mode == Mode.POOL ? null : virtualThreadExecutor();
+		if (mode == Mode.VIRTUAL && virtualExecutor == null) {
+			throw new IllegalStateException("가상 스레드를 지원하지 않는 런타임입니다. java.version = " + System.getProperty("java.version"));
+		}
+		this.virtual = virtualExecutor != null;
+		this.executor = virtual ? virtualExecutor : boundedPool(maxConcurrency);
+		log.info("비동기 조회 실행기. virtual = {}, max-concurrency = {}, max-pending = {}", virtual, maxConcurrency, maxPending);
+	}
+
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		if (!pending.tryAcquire()) {
+			return failed(new RejectedExecutionException("대기 중인 조회가 " + maxPending + "건을 넘었습니다."));
+		}
+		//자리는 작업 안의 finally 에서 반납한다. 호출자가 future 를 취소하거나 시간 초과로 끝내도 작업은 실행기에서 꼭 한 번 돌며,
+		//호출자가 결과를 받을 때는 이미 자리가 반납되어 있다
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					//이미 취소된 조회는 실행하지 않는다
+					if (!future.isDone()) {
+						future.complete(runLimited(task));
+					}
+				} catch (Throwable ex) {
+					future.completeExceptionally(ex);
+				} finally {
+					pending.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pending.release();
+			return failed(e);
+		}
+		return future;
+	}
+
+	//가상 스레드는 개수 제한이 없으므로 DB 를 쓰는 구간만 세마포어로 막는다
+	private <T> T runLimited(Supplier<T> task) {
+		try {
+			running.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		}
+		try {
+			return task.get();
+		} finally {
+			running.release();
+		}
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public int getPending() {
+		return maxPending - pending.availablePermits();
+	}
+
+	@Override
+	public void destroy() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable ex) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(ex);
+		return future;
+	}
+
+	//소스는 Java 11 이므로 Java 21 이상에서만 리플렉션으로 찾는다
+	private static ExecutorService virtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	//대기열 길이는 pending 세마포어가 제한한다
+	private static ExecutorService boundedPool(int size) {
+		AtomicInteger sequence = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "member-async-" + sequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.repository.support;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+
+/**
+ * 스프링 빈으로 만든 Hibernate 이벤트 리스너를 등록한다. (@PostConstruct 에서 호출)
+ */
+public final class HibernateListeners {
+
+	private HibernateListeners() {
+	}
+
+	@SafeVarargs
+	public static <T> void append(EntityManagerFactory emf, T listener, EventType<? super T>... types) {
+		EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry()
+				.getService(EventListenerRegistry.class);
+		for (EventType<? super T> type : types) {
+			appendListener(registry, type, listener);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <L> void appendListener(EventListenerRegistry registry, EventType<L> type, Object listener) {
+		registry.appendListeners(type, (L) listener);
+	}
+}
@@ -0,0 +1,52 @@
+package jpabook.jpashop.repository.support;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * member_seq, team_seq 를 이미 있는 id 보다 뒤에서 시작하게 맞춘다.
+ * 두 시퀀스가 생기기 전의 id 는 hibernate_sequence 에서 받았으므로, 기존 DB 에 ddl-auto 로 새로 만든 시퀀스는 1부터 시작해서 id 가 겹친다.
+ * 컨텍스트가 올라올 때 시퀀스의 다음 값이 max(id) 이하이면 max(id) + 1 로 다시 시작한다. (H2 문법)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdSequenceAligner {
+
+	private static final String NEXT_VALUE =
+			"select current_value + increment from information_schema.sequences where sequence_name = ?";
+
+	private final EntityManager em;
+
+	@EventListener(ContextRefreshedEvent.class)
+	@Transactional
+	public void alignAll() {
+		align("member_seq", "member", "member_id");
+		align("team_seq", "team", "id");
+	}
+
+	private void align(String sequence, String table, String idColumn) {
+		Number maxId = (Number) em.createNativeQuery("select max(" + idColumn + ") from " + table).getSingleResult();
+		if (maxId == null) {
+			return;
+		}
+		List<?> next = em.createNativeQuery(NEXT_VALUE)
+				.setParameter(1, sequence.toUpperCase())
+				.getResultList();
+		if (next.isEmpty() || ((Number) next.get(0)).longValue() > maxId.longValue()) {
+			return;
+		}
+		long restartWith = maxId.longValue() + 1;
+		em.createNativeQuery("alter sequence " + sequence + " restart with " + restartWith).executeUpdate();
+		log.info("{} 를 {} 부터 다시 시작합니다. max({}.{}) = {}", sequence, restartWith, table, idColumn, maxId);
+	}
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.repository.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 프록시 초기화와 지연 컬렉션 초기화를 연관관계 경로로 바꿔 QueryCountGuard 에 알린다.
+ * 프록시는 어느 필드에서 왔는지 알 수 없으므로 그 엔티티를 가리키는 연관관계를 모두 적는다. (예: Member.team)
+ */
+@RequiredArgsConstructor
+@Component
+public class LazyLoadListener implements LoadEventListener, InitializeCollectionEventListener {
+
+	private final EntityManagerFactory emf;
+	private final QueryCountGuard queryCountGuard;
+
+	//대상 엔티티 이름 -> 그 엔티티를 가리키는 연관관계 경로
+	private final Map<String, String> proxyPaths = new HashMap<>();
+
+	@PostConstruct
+	void register() {
+		SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+		Map<String, StringJoiner> paths = new HashMap<>();
+		for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+			String[] names = persister.getPropertyNames();
+			Type[] types = persister.getPropertyTypes();
+			for (int i = 0; i < names.length; i++) {
+				if (types[i].isEntityType()) {
+					String target = ((EntityType) types[i]).getAssociatedEntityName();
+					paths.computeIfAbsent(target, key -> new StringJoiner("|"))
+							.add(simpleEntityName(persister.getEntityName()) + "." + names[i]);
+				}
+			}
+		}
+		paths.forEach((target, joiner) -> proxyPaths.put(target, joiner.toString()));
+
+		HibernateListeners.append(emf, this, EventType.LOAD, EventType.INIT_COLLECTION);
+	}
+
+	@Override
+	public void onLoad(LoadEvent event, LoadType loadType) {
+		if (loadType == LoadEventListener.IMMEDIATE_LOAD) {
+			String entityName = event.getEntityClassName();
+			queryCountGuard.onLazyLoad(proxyPaths.getOrDefault(entityName, simpleEntityName(entityName)));
+		}
+	}
+
+	@Override
+	public void onInitializeCollection(InitializeCollectionEvent event) {
+		queryCountGuard.onLazyLoad(simpleRole(event.getCollection().getRole()));
+	}
+
+	//jpabook.jpashop.entity.Team -> Team
+	private static String simpleEntityName(String entityName) {
+		return entityName.substring(entityName.lastIndexOf('.') + 1);
+	}
+
+	//jpabook.jpashop.entity.Team.members -> Team.members
+	private static String simpleRole(String role) {
+		int property = role.lastIndexOf('.');
+		return simpleEntityName(role.substring(0, property)) + role.substring(property);
+	}
+}
@@ -0,0 +1,107 @@
+package jpabook.jpashop.repository.support;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.dto.MemberKeysetSlice;
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.repository.MemberSearchQueryCache;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * MemberJpaRepository 의 public 메서드별 지연시간, 반환 행 수, 실행한 SQL 문장 수를 기록한다.
+ *
+ * <ul>
+ * <li>member.repository : 지연시간 (method, shape, outcome)
+ * <li>member.repository.rows : 반환 행 수 (method, shape)
+ * <li>member.repository.statements : SQL 문장 수 (method, shape)
+ * </ul>
+ * shape 은 MemberSerachCondition 을 받는 메서드만 조건 모양(예: teamName+ageGoe)이고 나머지는 "-" 이다.
+ *
+ * <p>문장 수는 SqlStatementCounter 로 센다. querydsl-sql(MemberSqlRepository) 문장과 serachPageConcurrent 가 기다린 비동기 count 도 포함된다.
+ * 기다리지 않고 취소한 count 는 이미 실행되었어도 빠진다.
+ */
+@RequiredArgsConstructor
+@Aspect
+@Component
+public class MemberRepositoryMetrics {
+
+	private static final String NO_SHAPE = "-";
+
+	private final MeterRegistry registry;
+	private final SqlStatementCounter statementCounter;
+
+	@Around("execution(public * jpabook.jpashop.repository.MemberJpaRepository.*(..))")
+	public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+		String method = joinPoint.getSignature().getName();
+		String shape = shapeOf(joinPoint.getArgs());
+		long statementsBefore = statementCounter.current();
+		Timer.Sample sample = Timer.start(registry);
+		String outcome = "error";
+		try {
+			Object result = joinPoint.proceed();
+			outcome = "success";
+			recordRows(method, shape, result);
+			return result;
+		} finally {
+			sample.stop(Timer.builder("member.repository")
+					.tag("method", method)
+					.tag("shape", shape)
+					.tag("outcome", outcome)
+					.publishPercentiles(0.5, 0.99)
+					.register(registry));
+			DistributionSummary.builder("member.repository.statements")
+					.tag("method", method)
+					.tag("shape", shape)
+					.register(registry)
+					.record(statementCounter.current() - statementsBefore);
+		}
+	}
+
+	private void recordRows(String method, String shape, Object result) {
+		long rows = rowsOf(result);
+		if (rows < 0) {
+			return;
+		}
+		DistributionSummary.builder("member.repository.rows")
+				.tag("method", method)
+				.tag("shape", shape)
+				.register(registry)
+				.record(rows);
+	}
+
+	//스트림, 개수, 벌크 연산 결과는 반환 행으로 보지 않는다
+	private static long rowsOf(Object result) {
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		}
+		if (result instanceof Slice) {
+			return ((Slice<?>) result).getNumberOfElements();
+		}
+		if (result instanceof MemberKeysetSlice) {
+			return ((MemberKeysetSlice) result).getContent().size();
+		}
+		return -1;
+	}
+
+	private static String shapeOf(Object[] args) {
+		for (Object arg : args) {
+			if (arg instanceof MemberSerachCondition) {
+				return MemberSearchQueryCache.describe(MemberSearchQueryCache.shapeOf((MemberSerachCondition) arg));
+			}
+		}
+		return NO_SHAPE;
+	}
+}
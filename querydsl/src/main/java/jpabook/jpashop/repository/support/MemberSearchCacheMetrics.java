@@ -0,0 +1,43 @@
+package jpabook.jpashop.repository.support;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jpabook.jpashop.repository.MemberSearchQueryCache;
+import jpabook.jpashop.repository.MemberSearchResultCache;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 검색 JPQL 캐시(member.search.query.cache)와 검색 결과 캐시(member.search.result.cache) 통계.
+ */
+@RequiredArgsConstructor
+@Component
+public class MemberSearchCacheMetrics implements MeterBinder {
+
+	private final MemberSearchQueryCache queryCache;
+	private final MemberSearchResultCache resultCache;
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("member.search.query.cache", queryCache, MemberSearchQueryCache::getHitCount)
+				.tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder("member.search.query.cache", queryCache, MemberSearchQueryCache::getMissCount)
+				.tag("result", "miss")
+				.register(registry);
+
+		FunctionCounter.builder("member.search.result.cache", resultCache, c -> c.stats().hitCount())
+				.tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder("member.search.result.cache", resultCache, c -> c.stats().missCount())
+				.tag("result", "miss")
+				.register(registry);
+		FunctionCounter.builder("member.search.result.cache.evictions", resultCache, c -> c.stats().evictionCount())
+				.register(registry);
+		Gauge.builder("member.search.result.cache.size", resultCache, MemberSearchResultCache::estimatedSize)
+				.register(registry);
+	}
+}
@@ -0,0 +1,160 @@
+package jpabook.jpashop.repository.support;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * N+1 감시. 트랜잭션(작업 단위)마다 실행한 SQL 문장 수와 지연 로딩된 연관관계 경로를 센다.
+ *
+ * <ul>
+ * <li>member.query-guard.max-statements : 한 트랜잭션에서 허용하는 SQL 문장 수
+ * <li>member.query-guard.max-lazy-loads : 한 트랜잭션에서 연관관계 경로별로 허용하는 지연 로딩 횟수
+ * <li>member.query-guard.mode : off, log(경고 로그), fail(IllegalStateException)
+ * </ul>
+ *
+ * <p>테스트에서는 measure() 로 구간별 개수를 확인할 수 있다.
+ */
+@Slf4j
+@Component
+public class QueryCountGuard {
+
+	public enum Mode {
+		OFF, LOG, FAIL
+	}
+
+	private final Mode mode;
+	private final long maxStatements;
+	private final long maxLazyLoads;
+
+	private final ThreadLocal<Deque<Recording>> recordings = ThreadLocal.withInitial(ArrayDeque::new);
+
+	public QueryCountGuard(
+			@Value("${member.query-guard.mode:log}") Mode mode,
+			@Value("${member.query-guard.max-statements:100}") long maxStatements,
+			@Value("${member.query-guard.max-lazy-loads:10}") long maxLazyLoads) {
+		this.mode = mode;
+		this.maxStatements = maxStatements;
+		this.maxLazyLoads = maxLazyLoads;
+	}
+
+	public Recording measure(Runnable action) {
+		return measureResult(() -> {
+			action.run();
+			return null;
+		}).recording;
+	}
+
+	public <T> Measured<T> measureResult(Supplier<T> action) {
+		Recording recording = new Recording(false);
+		recordings.get().push(recording);
+		try {
+			return new Measured<>(action.get(), recording);
+		} finally {
+			recordings.get().remove(recording);
+		}
+	}
+
+	void onStatement() {
+		startUnitOfWork();
+		for (Recording recording : recordings.get()) {
+			recording.statements++;
+			if (recording.guarded && recording.statements == maxStatements + 1) {
+				violation("한 트랜잭션에서 SQL 이 " + maxStatements + "건을 넘었습니다. 지연 로딩 = " + recording.lazyLoads);
+			}
+		}
+	}
+
+	void onLazyLoad(String path) {
+		startUnitOfWork();
+		for (Recording recording : recordings.get()) {
+			long count = recording.lazyLoads.merge(path, 1L, Long::sum);
+			if (recording.guarded && count == maxLazyLoads + 1) {
+				violation("N+1 의심: " + path + " 지연 로딩이 한 트랜잭션에서 " + maxLazyLoads + "번을 넘었습니다.");
+			}
+		}
+	}
+
+	private void violation(String message) {
+		if (mode == Mode.FAIL) {
+			throw new IllegalStateException(message);
+		}
+		log.warn(message);
+	}
+
+	//트랜잭션이 있으면 끝날 때까지 하나의 작업 단위로 센다
+	private void startUnitOfWork() {
+		if (mode == Mode.OFF
+				|| !TransactionSynchronizationManager.isSynchronizationActive()
+				|| TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+
+		Recording unitOfWork = new Recording(true);
+		recordings.get().addLast(unitOfWork);
+		TransactionSynchronizationManager.bindResource(this, unitOfWork);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(QueryCountGuard.this);
+				recordings.get().remove(unitOfWork);
+				log.debug("작업 단위 종료. SQL = {}, 지연 로딩 = {}", unitOfWork.statements, unitOfWork.lazyLoads);
+			}
+		});
+	}
+
+	/**
+	 * 구간 동안 실행된 SQL 문장 수와 연관관계 경로별 지연 로딩 횟수. (예: Member.team, Team.members)
+	 */
+	public static class Recording {
+
+		private final boolean guarded;
+		private long statements;
+		private final Map<String, Long> lazyLoads = new LinkedHashMap<>();
+
+		private Recording(boolean guarded) {
+			this.guarded = guarded;
+		}
+
+		public long getStatements() {
+			return statements;
+		}
+
+		public Map<String, Long> getLazyLoads() {
+			return Collections.unmodifiableMap(lazyLoads);
+		}
+
+		public long getLazyLoads(String path) {
+			return lazyLoads.getOrDefault(path, 0L);
+		}
+	}
+
+	public static class Measured<T> {
+
+		private final T result;
+		private final Recording recording;
+
+		private Measured(T result, Recording recording) {
+			this.result = result;
+			this.recording = recording;
+		}
+
+		public T getResult() {
+			return result;
+		}
+
+		public Recording getRecording() {
+			return recording;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package jpabook.jpashop.repository.support;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 웹 요청을 보낸 호출자를 ReplicaRoutingDataSource 에 묶는다. 같은 사용자의 요청이 다른 스레드에서 처리되어도
+ * read-your-writes 창이 이어진다.
+ * X-Client-Id 헤더가 있으면 그 값을, 없으면 HTTP 세션 id 를 쓴다. 둘 다 없으면 묶지 않으므로 스레드 단위로 동작한다.
+ */
+@RequiredArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+	private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String key = callerKey(request);
+		if (key == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		try (ReplicaRoutingDataSource.Scope scope = replicaRoutingDataSource.bindCaller(key)) {
+			filterChain.doFilter(request, response);
+		}
+	}
+
+	private static String callerKey(HttpServletRequest request) {
+		String clientId = request.getHeader(CLIENT_ID_HEADER);
+		if (hasText(clientId)) {
+			return "client-" + clientId;
+		}
+		HttpSession session = request.getSession(false);
+		return session == null ? null : "session-" + session.getId();
+	}
+}
@@ -0,0 +1,69 @@
+package jpabook.jpashop.repository.support;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * member.datasource.replica.url 이 있을 때만 켜진다. 없으면 spring.datasource 하나만 사용한다.
+ *
+ * <ul>
+ * <li>spring.datasource.* : primary (hikari 설정은 spring.datasource.hikari.*)
+ * <li>member.datasource.replica.url / username / password : replica (hikari 설정은 member.datasource.replica.hikari.*)
+ * <li>member.datasource.read-your-writes : 쓰기 후 같은 호출자의 읽기를 primary 로 보내는 시간. 기본 0 (사용 안 함)
+ *     웹 요청의 호출자는 ReadYourWritesFilter 가 X-Client-Id 헤더나 세션으로 정한다
+ * </ul>
+ */
+@Configuration
+@ConditionalOnProperty("member.datasource.replica.url")
+public class ReplicaRoutingConfig {
+
+	@Bean
+	public ReplicaRoutingDataSource replicaRoutingDataSource(
+			DataSourceProperties properties,
+			Environment environment,
+			@Value("${member.datasource.replica.url}") String replicaUrl,
+			@Value("${member.datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+			@Value("${member.datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+			@Value("${member.datasource.read-your-writes:0s}") Duration readYourWrites) {
+		
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+		
+		HikariDataSource replica = new HikariDataSource();
+		replica.setPoolName("replica");
+		replica.setDriverClassName(properties.determineDriverClassName());
+		replica.setJdbcUrl(replicaUrl);
+		replica.setUsername(replicaUsername);
+		replica.setPassword(replicaPassword);
+		replica.setReadOnly(true);
+		Binder.get(environment).bind("member.datasource.replica.hikari", Bindable.ofInstance(replica));
+		
+		return new ReplicaRoutingDataSource(primary, replica, readYourWrites);
+	}
+
+	@Bean
+	public ReadYourWritesFilter readYourWritesFilter(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new ReadYourWritesFilter(replicaRoutingDataSource);
+	}
+
+	@Primary
+	@Bean
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+}
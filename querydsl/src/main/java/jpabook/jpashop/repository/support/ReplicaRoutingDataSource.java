@@ -0,0 +1,140 @@
+package jpabook.jpashop.repository.support;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 읽기 전용 트랜잭션은 replica, 나머지는 primary 로 보낸다.
+ * 트랜잭션 시작 시점에는 읽기 전용 여부가 아직 정해지지 않았으므로 LazyConnectionDataSourceProxy 로 감싸서 사용한다.
+ *
+ * <p>readYourWritesWindow 가 0 보다 크면, 쓰기 트랜잭션을 커밋한 호출자는 그 시간 동안 읽기도 primary 에서 한다.
+ * (복제 지연 때문에 방금 쓴 데이터가 replica 에 없을 수 있다)
+ * 호출자는 bindCaller 로 묶은 key(사용자, 세션 등. 웹 요청은 ReadYourWritesFilter)이고, 묶지 않았으면 스레드다.
+ * 같은 key 면 다른 스레드에서 실행되는 다음 요청도 primary 에서 읽는다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+	public enum Target {
+		PRIMARY, REPLICA
+	}
+
+	private final DataSource primary;
+	private final DataSource replica;
+	private final long readYourWritesNanos;
+	//창이 열려 있는 호출자. 항목은 readYourWritesWindow 가 지나면 사라진다
+	private final Cache<String, Boolean> recentWriters;
+	private final ThreadLocal<String> caller = new ThreadLocal<>();
+
+	public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+		this.primary = primary;
+		this.replica = replica;
+		this.readYourWritesNanos = readYourWritesWindow.toNanos();
+		this.recentWriters = Caffeine.newBuilder()
+				.expireAfterWrite(readYourWritesWindow.isNegative() ? Duration.ZERO : readYourWritesWindow)
+				.maximumSize(100_000)
+				.build();
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(Target.PRIMARY, primary);
+		targets.put(Target.REPLICA, replica);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return currentTarget();
+	}
+
+	public Target currentTarget() {
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !inReadYourWritesWindow()) {
+			return Target.REPLICA;
+		}
+		return Target.PRIMARY;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Connection connection = super.getConnection();
+		recordWriteOnCommit();
+		return connection;
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		Connection connection = super.getConnection(username, password);
+		recordWriteOnCommit();
+		return connection;
+	}
+
+	/**
+	 * 이 스레드에서 이후 실행하는 호출을 key 의 호출로 본다. 반환된 Scope 를 닫으면 이전 호출자로 돌아간다.
+	 */
+	public Scope bindCaller(String key) {
+		String previous = caller.get();
+		caller.set(key);
+		return () -> {
+			if (previous == null) {
+				caller.remove();
+			} else {
+				caller.set(previous);
+			}
+		};
+	}
+
+	private String callerKey() {
+		String key = caller.get();
+		return key != null ? key : "thread-" + Thread.currentThread().getId();
+	}
+
+	//primary 를 쓴 읽기/쓰기 트랜잭션이 커밋되면 그 시점부터 호출자의 창이 열린다
+	private void recordWriteOnCommit() {
+		if (readYourWritesNanos <= 0
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				|| !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		String key = callerKey();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				recentWriters.put(key, Boolean.TRUE);
+			}
+		});
+	}
+
+	private boolean inReadYourWritesWindow() {
+		return readYourWritesNanos > 0 && recentWriters.getIfPresent(callerKey()) != null;
+	}
+
+	public interface Scope extends AutoCloseable {
+
+		@Override
+		void close();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		close(primary);
+		close(replica);
+	}
+
+	private static void close(DataSource dataSource) throws Exception {
+		if (dataSource instanceof AutoCloseable) {
+			((AutoCloseable) dataSource).close();
+		}
+	}
+}
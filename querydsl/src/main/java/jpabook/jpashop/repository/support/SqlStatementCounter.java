@@ -0,0 +1,54 @@
+package jpabook.jpashop.repository.support;
+
+import java.util.Map;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Hibernate 가 준비하는 SQL 문장 수를 스레드별로 센다. querydsl-sql 로 실행하는 문장은 QuerydslSqlConfig 의 리스너가 record() 로 센다.
+ * 값은 계속 증가만 하므로 호출 전후의 차이로 구간별 문장 수를 구한다.
+ *
+ * <p>Hibernate 전역 통계(Statistics)는 모든 스레드가 합쳐지므로 호출 단위로 나눌 수 없어서 따로 센다.
+ */
+@RequiredArgsConstructor
+@Component
+public class SqlStatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+	private final QueryCountGuard queryCountGuard;
+	private final ThreadLocal<long[]> count = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public void customize(Map<String, Object> hibernateProperties) {
+		hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+	}
+
+	@Override
+	public String inspect(String sql) {
+		record();
+		return sql;
+	}
+
+	/**
+	 * Hibernate 를 거치지 않고 이 스레드에서 실행한 문장 하나를 센다.
+	 */
+	public void record() {
+		count.get()[0]++;
+		queryCountGuard.onStatement();
+	}
+
+	/**
+	 * 다른 스레드에서 실행한 문장 수를 이 스레드에 더한다. QueryCountGuard 는 실행한 스레드에서 이미 셌으므로 알리지 않는다.
+	 */
+	public void add(long statements) {
+		count.get()[0] += statements;
+	}
+
+	public long current() {
+		return count.get()[0];
+	}
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import jpabook.jpashop.repository.TeamJpaRepository;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * 스트리밍 응답은 별도 스레드의 트랜잭션에서 조회하므로 데이터를 먼저 커밋한다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+@AutoConfigureMockMvc
+public class MemberControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+	
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+	
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+	
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	
+	String teamName = "streamTeam";
+	
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+	}
+	
+	@Test
+	void searchStreamTest() throws Exception {
+		transactionTemplate.executeWithoutResult(status -> {
+			Team streamTeam = new Team(teamName);
+			teamJpaRepository.save(streamTeam);
+			memberJpaRepository.save(new Member(teamName + "-1", 10, streamTeam));
+			memberJpaRepository.save(new Member(teamName + "-2", 20, streamTeam));
+			memberJpaRepository.save(new Member(teamName + "-3", 30, streamTeam));
+		});
+		
+		MvcResult result = mockMvc.perform(get("/v1/members")
+					.param("taemName", teamName)
+					.param("ageGoe", "20"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MemberController.APPLICATION_NDJSON_VALUE))
+				.andReturn().getResponse().getContentAsString();
+		
+		//한 줄에 회원 한 명
+		assertThat(body).endsWith("\n");
+		assertThat(body.split("\n"))
+			.hasSize(2)
+			.allSatisfy(line -> assertThat(line).startsWith("{").endsWith("}").contains(teamName))
+			.anySatisfy(line -> assertThat(line).contains("\"username\":\"" + teamName + "-2\""))
+			.anySatisfy(line -> assertThat(line).contains("\"username\":\"" + teamName + "-3\""));
+	}
+}
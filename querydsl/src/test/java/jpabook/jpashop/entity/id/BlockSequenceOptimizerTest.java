@@ -0,0 +1,104 @@
+package jpabook.jpashop.entity.id;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.junit.jupiter.api.Test;
+
+public class BlockSequenceOptimizerTest {
+
+	static final int INCREMENT = 50;
+
+	/**
+	 * start with 1 increment by 50 인 DB 시퀀스 흉내
+	 */
+	static class FakeSequence implements AccessCallback {
+
+		final AtomicLong calls = new AtomicLong();
+
+		@Override
+		public IntegralDataTypeHolder getNextValue() {
+			long value = calls.getAndIncrement() * INCREMENT + 1;
+			return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class).initialize(value);
+		}
+
+		@Override
+		public String getTenantIdentifier() {
+			return null;
+		}
+	}
+
+	@Test
+	void generateInBlocks() {
+		FakeSequence sequence = new FakeSequence();
+		BlockSequenceOptimizer optimizer = new BlockSequenceOptimizer(Long.class, INCREMENT);
+
+		List<Object> ids = new ArrayList<>();
+		for (int i = 0; i < INCREMENT * 2; i++) {
+			ids.add(optimizer.generate(sequence));
+		}
+
+		assertThat(ids.get(0)).isEqualTo(1L);
+		assertThat(ids.get(INCREMENT * 2 - 1)).isEqualTo((long) INCREMENT * 2);
+		assertThat(sequence.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	void concurrentGenerate() throws Exception {
+		int threads = 32;
+		int perThread = 10_000;
+		FakeSequence sequence = new FakeSequence();
+		BlockSequenceOptimizer optimizer = new BlockSequenceOptimizer(Long.class, INCREMENT);
+		Set<Object> ids = ConcurrentHashMap.newKeySet();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < perThread; i++) {
+					ids.add(optimizer.generate(sequence));
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertThat(ids).hasSize(threads * perThread);
+		//동시에 가져온 블록은 다음 교체 때 쓰므로 스레드 수 이상으로 낭비되지 않는다
+		assertThat(sequence.calls.get()).isLessThanOrEqualTo(threads * perThread / INCREMENT + threads);
+	}
+
+	@Test
+	void restartDoesNotReuseIds() {
+		FakeSequence sequence = new FakeSequence();
+		BlockSequenceOptimizer beforeRestart = new BlockSequenceOptimizer(Long.class, INCREMENT);
+		Object last = null;
+		for (int i = 0; i < 10; i++) {
+			last = beforeRestart.generate(sequence);
+		}
+
+		BlockSequenceOptimizer afterRestart = new BlockSequenceOptimizer(Long.class, INCREMENT);
+		Object first = afterRestart.generate(sequence);
+
+		assertThat((Long) first).isGreaterThan((Long) last);
+		assertThat(first).isEqualTo((long) INCREMENT + 1);
+	}
+}
@@ -0,0 +1,129 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.support.AsyncQueryExecutor;
+import jpabook.jpashop.repository.support.SqlStatementCounter;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * 비동기 조회는 다른 스레드의 트랜잭션에서 실행되므로 데이터를 먼저 커밋한다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+public class MemberAsyncRepositoryTest {
+
+	@Autowired
+	MemberAsyncRepository memberAsyncRepository;
+	
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+	
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+	
+	@Autowired
+	AsyncQueryExecutor asyncQueryExecutor;
+	
+	@Autowired
+	MemberSearchResultCache searchResultCache;
+	
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	
+	@Autowired
+	SqlStatementCounter sqlStatementCounter;
+	
+	String teamName = "asyncTeam";
+	
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+		searchResultCache.invalidateAll();
+	}
+	
+	@Test
+	void asyncSearchTest() throws Exception {
+		Member saved = saveMembers(2);
+		
+		assertThat(memberAsyncRepository.findById(saved.getId()).get(5, TimeUnit.SECONDS).map(Member::getUsername))
+			.contains(teamName + "-1");
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(teamName);
+		
+		//동시 실행 한도보다 많이 요청해도 대기했다가 모두 끝난다
+		List<CompletableFuture<List<MemberTeamDto>>> futures = IntStream.range(0, 30)
+			.mapToObj(i -> memberAsyncRepository.serachByBuilder(condition))
+			.collect(Collectors.toList());
+		for (CompletableFuture<List<MemberTeamDto>> future : futures) {
+			assertThat(future.get(10, TimeUnit.SECONDS))
+				.extracting(MemberTeamDto::getUsername)
+				.containsExactlyInAnyOrder(teamName + "-1", teamName + "-2");
+		}
+	}
+	
+	@Test
+	void concurrentPageTest() throws InterruptedException {
+		saveMembers(5);
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(teamName);
+		
+		long before = sqlStatementCounter.current();
+		Page<MemberTeamDto> firstPage = memberJpaRepository.serachPageConcurrent(condition, PageRequest.of(0, 2));
+		assertThat(firstPage.getContent()).extracting("username").containsExactly(teamName + "-1", teamName + "-2");
+		assertThat(firstPage.getTotalElements()).isEqualTo(5);
+		//실행기 스레드에서 실행한 count 도 호출 스레드의 문장 수에 들어간다
+		assertThat(sqlStatementCounter.current() - before).as("content + count").isEqualTo(2);
+		
+		Page<MemberTeamDto> lastPage = memberJpaRepository.serachPageConcurrent(condition, PageRequest.of(2, 2));
+		assertThat(lastPage.getContent()).extracting("username").containsExactly(teamName + "-5");
+		assertThat(lastPage.getTotalElements()).isEqualTo(5);
+		
+		//count 가 필요 없어 취소된 페이지도 실행기 자리를 남기지 않는다
+		for(int i = 0; i < 20; i++) {
+			assertThat(memberJpaRepository.serachPageConcurrent(condition, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(5);
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(asyncQueryExecutor.getPending() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(asyncQueryExecutor.getPending()).isZero();
+	}
+	
+	//첫 번째 회원을 돌려준다
+	private Member saveMembers(int count) {
+		return transactionTemplate.execute(status -> {
+			Team asyncTeam = new Team(teamName);
+			teamJpaRepository.save(asyncTeam);
+			Member first = null;
+			for (int i = 1; i <= count; i++) {
+				Member saved = new Member(teamName + "-" + i, i * 10, asyncTeam);
+				memberJpaRepository.save(saved);
+				first = first == null ? saved : first;
+			}
+			return first;
+		});
+	}
+}
@@ -0,0 +1,162 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.MemberBulkResult;
+import jpabook.jpashop.dto.TeamStatsDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * 청크마다 커밋되는지 보려면 테스트 트랜잭션 밖에서 호출해야 하므로 데이터를 커밋한다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+public class MemberBulkChunkedTest {
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+	}
+
+	@Test
+	void failedChunkStillRebuildsStatsTest() {
+		Team teamA = new Team("teamA");
+		List<Member> members = saveMembers(teamA, 10);
+
+		//뒤쪽 청크의 회원을 참조하는 행이 있으면 그 청크의 삭제가 실패한다
+		jdbcTemplate.execute("create table member_ref (member_id bigint references member(member_id))");
+		try {
+			jdbcTemplate.update("insert into member_ref values (?)", members.get(8).getId());
+			assertThatThrownBy(() -> memberJpaRepository.bulkDeleteByAgeGtChunked(50, 2))
+				.isInstanceOf(DataAccessException.class);
+		} finally {
+			jdbcTemplate.execute("drop table member_ref");
+		}
+
+		//앞 청크는 커밋되었고 통계도 그에 맞게 다시 만들어졌다
+		assertThat(memberJpaRepository.findById(members.get(5).getId())).isEmpty();
+		assertThat(memberJpaRepository.findById(members.get(8).getId())).isPresent();
+		Map<String, Object> live = jdbcTemplate.queryForMap(
+				"select count(*) as cnt, coalesce(sum(age), 0) as total from member where team_id = ?", teamA.getId());
+		TeamStatsDto stats = teamJpaRepository.findStats(teamA.getId()).get();
+		assertThat(stats.getMemberCount()).isEqualTo(((Number) live.get("cnt")).longValue()).isLessThan(10);
+		assertThat(stats.getAgeSum()).isEqualTo(((Number) live.get("total")).longValue());
+	}
+
+	@Test
+	void chunksCommitOutsideTransactionTest() {
+		Team teamA = new Team("teamA");
+		List<Member> members = saveMembers(teamA, 10);
+
+		MemberBulkResult updated = memberJpaRepository.bulkAgePlusChunked(50, 3);
+		assertThat(updated.getRows()).isEqualTo(6);
+		assertThat(updated.getChunks()).isEqualTo(expectedChunks(members.subList(4, 10), 3)).isGreaterThan(1);
+		assertThat(updated.maxLockHold()).isPositive().isLessThanOrEqualTo(Duration.ofNanos(updated.getElapsedNanos()));
+
+		//청크가 모두 커밋되어 다른 커넥션에서도 보인다
+		assertThat(jdbcTemplate.queryForObject("select count(*) from member where age in (51, 61, 71, 81, 91, 101)", Long.class))
+			.isEqualTo(6);
+		assertThat(jdbcTemplate.queryForObject("select sum(age) from member", Long.class)).isEqualTo(556);
+		assertThat(teamJpaRepository.findStats(teamA.getId()).get().getAgeSum()).isEqualTo(556);
+
+		//open-in-view 가 없으면 미리 읽어 둔 회원은 준영속이라 맞춰지지 않는다
+		assertThat(members.get(4).getAge()).isEqualTo(50);
+
+		MemberBulkResult deleted = memberJpaRepository.bulkDeleteByAgeGtChunked(90, 1);
+		assertThat(deleted.getRows()).isEqualTo(2);
+		assertThat(deleted.getChunks()).isEqualTo(expectedChunks(members.subList(8, 10), 1));
+		assertThat(jdbcTemplate.queryForObject("select count(*) from member", Long.class)).isEqualTo(8);
+	}
+
+	@Test
+	void openEntityManagerSyncTest() {
+		Team teamA = new Team("teamA");
+		List<Member> members = saveMembers(teamA, 10);
+
+		//open-in-view 처럼 영속성 컨텍스트를 스레드에 묶어 두면 청크 트랜잭션이 모두 같은 영속성 컨텍스트를 쓴다
+		EntityManager shared = emf.createEntityManager();
+		TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(shared));
+		try {
+			Map<String, Member> loaded = memberJpaRepository.findAll().stream()
+				.collect(Collectors.toMap(Member::getUsername, m -> m));
+			Member member5 = loaded.get("member5");
+			Member member10 = loaded.get("member10");
+
+			MemberBulkResult updated = memberJpaRepository.bulkAgePlusChunked(50, 3);
+			assertThat(updated.getChunks()).isEqualTo(expectedChunks(members.subList(4, 10), 3)).isGreaterThan(1);
+			assertThat(member5.getAge()).isEqualTo(51);
+			assertThat(loaded.get("member4").getAge()).isEqualTo(40);
+			assertThat(shared.contains(member5)).isTrue();
+
+			MemberBulkResult deleted = memberJpaRepository.bulkDeleteByAgeGtChunked(90, 1);
+			assertThat(deleted.getRows()).isEqualTo(2);
+			assertThat(shared.contains(member10)).isFalse();
+			assertThat(shared.contains(loaded.get("member8"))).isTrue();
+		} finally {
+			TransactionSynchronizationManager.unbindResource(emf);
+			shared.close();
+		}
+
+		//영속성 컨텍스트의 값과 커밋된 값이 같다
+		assertThat(jdbcTemplate.queryForObject("select age from member where member_id = ?", Integer.class,
+				members.get(4).getId())).isEqualTo(51);
+		assertThat(jdbcTemplate.queryForObject("select count(*) from member", Long.class)).isEqualTo(8);
+	}
+
+	//청크는 대상 id 의 [min, max] 를 chunkSize 씩 나눈 구간 수다
+	private static int expectedChunks(List<Member> targets, int chunkSize) {
+		LongSummaryStatistics ids = targets.stream().mapToLong(Member::getId).summaryStatistics();
+		return (int) ((ids.getMax() - ids.getMin()) / chunkSize + 1);
+	}
+
+	//나이는 10, 20, ... 순서
+	private List<Member> saveMembers(Team team, int count) {
+		return transactionTemplate.execute(status -> {
+			teamJpaRepository.save(team);
+			List<Member> members = new ArrayList<>();
+			for (int i = 1; i <= count; i++) {
+				Member saved = new Member("member" + i, i * 10, team);
+				memberJpaRepository.save(saved);
+				members.add(saved);
+			}
+			return members;
+		});
+	}
+}
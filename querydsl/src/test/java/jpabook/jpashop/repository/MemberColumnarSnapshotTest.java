@@ -0,0 +1,201 @@
+package jpabook.jpashop.repository;
+
+import static jpabook.jpashop.entity.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.IntSummaryStatistics;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * 스냅샷은 커밋된 변경만 반영하므로 데이터를 먼저 커밋한다.
+ */
+@SpringBootTest(properties = { TestDatabase.IN_MEMORY, "member.snapshot.enabled=true" })
+public class MemberColumnarSnapshotTest {
+
+	@Autowired
+	MemberColumnarSnapshot snapshot;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MemberSearchResultCache searchResultCache;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	//DB 를 직접 비웠으므로 메모리에 들고 있는 결과도 비운다
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+		snapshot.invalidate();
+		searchResultCache.invalidateAll();
+	}
+
+	@Test
+	void sameResultAsRepositoryTest() {
+		Team teamA = saveTeam("teamA", 10, 20, 30);
+		saveTeam("teamB", 40, 50);
+
+		for (MemberSerachCondition condition : new MemberSerachCondition[] {
+				condition("teamA", null, null, null),
+				condition("teamB", 45, null, null),
+				condition("teamA", 15, 25, null),
+				condition(null, null, null, "teamA-30"),
+				condition("teamA", 35, 15, null) }) {
+			assertThat(snapshot.search(condition))
+				.usingFieldByFieldElementComparator()
+				.containsExactlyInAnyOrderElementsOf(memberJpaRepository.serachByBuilder(condition));
+			assertThat(snapshot.count(condition)).isEqualTo(memberJpaRepository.serachByBuilder(condition).size());
+		}
+
+		IntSummaryStatistics statistics = snapshot.ageStatistics(condition("teamA", null, null, null));
+		assertThat(statistics.getCount()).isEqualTo(3);
+		assertThat(statistics.getSum()).isEqualTo(60);
+		assertThat(statistics.getMin()).isEqualTo(10);
+		assertThat(statistics.getMax()).isEqualTo(30);
+
+		Map<Long, IntSummaryStatistics> byTeam = snapshot.ageStatisticsByTeam(condition("teamA", 20, null, null));
+		assertThat(byTeam).containsOnlyKeys(teamA.getId());
+		assertThat(byTeam.get(teamA.getId()).getAverage()).isEqualTo(25.0);
+	}
+
+	@Test
+	void incrementalRefreshTest() {
+		saveTeam("teamA", 10, 20);
+		MemberSerachCondition condition = condition("teamA", null, null, null);
+		assertThat(snapshot.count(condition)).isEqualTo(2);
+
+		//커밋된 추가, 변경, 삭제가 반영된다
+		saveTeam("teamA2", 30);
+		transactionTemplate.executeWithoutResult(status -> {
+			Member first = queryFactory.selectFrom(member).where(member.username.eq("teamA-10")).fetchOne();
+			first.setAge(11);
+			Member second = queryFactory.selectFrom(member).where(member.username.eq("teamA-20")).fetchOne();
+			em.remove(second);
+		});
+		assertThat(snapshot.search(condition)).extracting(MemberTeamDto::getAge).containsExactly(11);
+		assertThat(snapshot.count(condition("teamA2", null, null, null))).isEqualTo(1);
+
+		//롤백된 변경은 반영되지 않는다
+		transactionTemplate.executeWithoutResult(status -> {
+			queryFactory.selectFrom(member).where(member.username.eq("teamA-10")).fetchOne().setAge(99);
+			status.setRollbackOnly();
+		});
+		assertThat(snapshot.search(condition)).extracting(MemberTeamDto::getAge).containsExactly(11);
+	}
+
+	@Test
+	void firstLoadInRolledBackTransactionTest() {
+		saveTeam("teamA", 10);
+		MemberSerachCondition condition = condition("teamA", null, null, null);
+
+		//스냅샷을 처음 읽는 시점이 아직 커밋되지 않은 쓰기 트랜잭션 안이다
+		transactionTemplate.executeWithoutResult(status -> {
+			Team teamA = teamJpaRepository.findByName("teamA").get();
+			memberJpaRepository.save(new Member("teamA-20", 20, teamA));
+			em.flush();
+			assertThat(snapshot.count(condition)).isEqualTo(1);
+			status.setRollbackOnly();
+		});
+		assertThat(snapshot.search(condition)).extracting(MemberTeamDto::getAge).containsExactly(10);
+	}
+
+	@Test
+	void laterCommitWinsTest() {
+		saveTeam("teamA", 10);
+		MemberSerachCondition condition = condition("teamA", null, null, null);
+		assertThat(snapshot.count(condition)).isEqualTo(1);
+
+		TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		transactionTemplate.executeWithoutResult(status -> {
+			//스냅샷보다 먼저 등록했으므로, 이 트랜잭션이 반영되기 전에 다른 트랜잭션이 같은 회원을 바꾸고 커밋한다
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					requiresNew.executeWithoutResult(inner -> findMember("teamA-10").setAge(12));
+				}
+			});
+			findMember("teamA-10").setAge(11);
+		});
+		assertThat(snapshot.search(condition)).extracting(MemberTeamDto::getAge).containsExactly(12);
+	}
+
+	@Test
+	void oneSynchronizationPerTransactionTest() {
+		Team teamA = saveTeam("teamA");
+		assertThat(snapshot.size()).isZero();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			int before = TransactionSynchronizationManager.getSynchronizations().size();
+			memberJpaRepository.saveAll(IntStream.rangeClosed(1, 300)
+					.mapToObj(i -> new Member("teamA-" + i, i, teamA))
+					.collect(Collectors.toList()));
+			assertThat(TransactionSynchronizationManager.getSynchronizations().size() - before).isLessThan(10);
+		});
+		assertThat(snapshot.count(condition("teamA", null, null, null))).isEqualTo(300);
+	}
+
+	private Member findMember(String username) {
+		return queryFactory.selectFrom(member).where(member.username.eq(username)).fetchOne();
+	}
+
+	private Team saveTeam(String name, int... ages) {
+		return transactionTemplate.execute(status -> {
+			Team saved = new Team(name);
+			teamJpaRepository.save(saved);
+			for (int age : ages) {
+				memberJpaRepository.save(new Member(name + "-" + age, age, saved));
+			}
+			return saved;
+		});
+	}
+
+	private static MemberSerachCondition condition(String teamName, Integer ageGoe, Integer ageLoe, String username) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(teamName);
+		condition.setAgeGoe(ageGoe);
+		condition.setAgeLoe(ageLoe);
+		condition.setUsername(username);
+		return condition;
+	}
+}
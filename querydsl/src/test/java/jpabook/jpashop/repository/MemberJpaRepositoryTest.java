@@ -1,20 +1,41 @@
 package jpabook.jpashop.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static jpabook.jpashop.support.QueryCountAssertions.assertLazyLoads;
+import static jpabook.jpashop.support.QueryCountAssertions.assertNoLazyLoads;
+import static jpabook.jpashop.support.QueryCountAssertions.assertStatements;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.dto.MemberBulkResult;
+import jpabook.jpashop.dto.MemberKeysetOrder;
+import jpabook.jpashop.dto.MemberKeysetSlice;
 import jpabook.jpashop.dto.MemberSerachCondition;
 import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.dto.TeamStatsDto;
 import jpabook.jpashop.entity.Member;
 import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.repository.sql.MemberSqlRepository.Engine;
+import jpabook.jpashop.repository.support.QueryCountGuard;
+import jpabook.jpashop.repository.support.SqlStatementCounter;
 
 
 
@@ -28,6 +49,21 @@ public class MemberJpaRepositoryTest {
 	@Autowired
 	MemberJpaRepository memberJpaRepository;
 	
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+	
+	@Autowired
+	MemberSearchQueryCache searchQueryCache;
+	
+	@Autowired
+	MeterRegistry meterRegistry;
+	
+	@Autowired
+	QueryCountGuard queryCountGuard;
+	
+	@Autowired
+	SqlStatementCounter sqlStatementCounter;
+	
 	@Test
 	void basic() {
 	
@@ -91,5 +127,519 @@ public class MemberJpaRepositoryTest {
 	
 	}
 	
+	@Test
+	void searchSqlEngineTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40, null));
+		
+		//flush 하지 않아도 SQL 방식이 먼저 flush 하므로 같은 결과가 나온다
+		for(MemberSerachCondition condition : new MemberSerachCondition[] {
+				new MemberSerachCondition(),
+				condition(null, "teamA", null, null),
+				condition("member3", null, 25, 35),
+				condition(null, null, 35, null) }) {
+			assertThat(memberJpaRepository.serachByBuilder(condition, Engine.SQL))
+				.usingFieldByFieldElementComparator()
+				.containsExactlyInAnyOrderElementsOf(memberJpaRepository.serachByBuilder(condition, Engine.JPQL));
+		}
+		
+		//팀이 없는 회원은 left join 으로 팀 컬럼이 null 이다
+		assertThat(memberJpaRepository.serachByBuilder(condition("member4", null, 35, null), Engine.SQL))
+			.extracting("username", "teamId", "teamName")
+			.contains(tuple("member4", null, null));
+	}
+	
+	@Test
+	void searchKeysetTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 20, teamB));
+		em.persist(new Member("member4", 40, teamB));
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		
+		MemberKeysetSlice page1 = memberJpaRepository.serachByKeyset(condition, null, 3, MemberKeysetOrder.AGE_DESC);
+		assertThat(page1.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+		assertThat(page1.hasNext()).isTrue();
+		
+		MemberKeysetSlice page2 = memberJpaRepository.serachByKeyset(condition, page1.getNextCursor(), 3, MemberKeysetOrder.AGE_DESC);
+		assertThat(page2.getContent()).extracting("username").containsExactly("member1");
+		assertThat(page2.hasNext()).isFalse();
+		
+		condition.setTaemName("teamA");
+		MemberKeysetSlice teamPage1 = memberJpaRepository.serachByKeyset(condition, null, 1, MemberKeysetOrder.ID_ASC);
+		MemberKeysetSlice teamPage2 = memberJpaRepository.serachByKeyset(condition, teamPage1.getNextCursor(), 1, MemberKeysetOrder.ID_ASC);
+		assertThat(teamPage1.getContent()).extracting("username").containsExactly("member1");
+		assertThat(teamPage2.getContent()).extracting("username").containsExactly("member2");
+		
+		assertThatThrownBy(() -> memberJpaRepository.serachByKeyset(condition, page1.getNextCursor(), 1, MemberKeysetOrder.ID_ASC))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	void searchPageTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40, teamB));
+		em.flush();
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		//팀 조건이 없으면 count 는 member 만 센다
+		assertThat(memberJpaRepository.countQuery(condition).toString()).doesNotContain("join");
+		
+		long before = sqlStatementCounter.current();
+		Page<MemberTeamDto> firstPage = memberJpaRepository.serachPage(condition, PageRequest.of(0, 3));
+		assertThat(firstPage.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+		assertThat(firstPage.getTotalElements()).isEqualTo(4);
+		assertThat(sqlStatementCounter.current() - before).as("content + count").isEqualTo(2);
+		
+		//마지막 페이지는 content 수로 전체 개수를 알 수 있으므로 count 를 실행하지 않는다
+		before = sqlStatementCounter.current();
+		Page<MemberTeamDto> lastPage = memberJpaRepository.serachPage(condition, PageRequest.of(1, 3));
+		assertThat(lastPage.getContent()).extracting("username").containsExactly("member4");
+		assertThat(lastPage.getTotalElements()).isEqualTo(4);
+		assertThat(sqlStatementCounter.current() - before).as("content only").isEqualTo(1);
+		
+		condition.setTaemName("teamB");
+		assertThat(memberJpaRepository.countQuery(condition).toString()).contains("join");
+		before = sqlStatementCounter.current();
+		Page<MemberTeamDto> teamPage = memberJpaRepository.serachPage(condition, PageRequest.of(0, 10));
+		assertThat(teamPage.getContent()).extracting("username").containsExactly("member3", "member4");
+		assertThat(teamPage.getTotalElements()).isEqualTo(2);
+		assertThat(sqlStatementCounter.current() - before).as("content only").isEqualTo(1);
+		assertThat(memberJpaRepository.serachCount(condition)).isEqualTo(2);
+	}
+	
+	@Test
+	void searchPageConcurrentInTransactionTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamA));
+		
+		//트랜잭션 안에서는 순서대로 실행하므로 커밋 전 데이터도 보인다
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamA");
+		Page<MemberTeamDto> page = memberJpaRepository.serachPageConcurrent(condition, PageRequest.of(0, 2));
+		assertThat(page.getContent()).extracting("username").containsExactly("member1", "member2");
+		assertThat(page.getTotalElements()).isEqualTo(3);
+	}
+	
+	@Test
+	void streamTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40, teamB));
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamB");
+		
+		try (Stream<MemberTeamDto> stream = memberJpaRepository.serachStream(condition, 2)) {
+			assertThat(stream.map(MemberTeamDto::getUsername)).containsExactlyInAnyOrder("member3", "member4");
+		}
+		
+		em.flush();
+		em.clear();
+		
+		try (Stream<Member> stream = memberJpaRepository.findAllStream_Querydsl(2)) {
+			List<Member> result = stream.collect(Collectors.toList());
+			assertThat(result).hasSize(4);
+			assertThat(result).noneMatch(em::contains);
+		}
+	}
+	
+	@Test
+	void readOnlyTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, null));
+		em.flush();
+		em.clear();
+		
+		//읽기 전용으로 올라온 엔티티는 수정해도 flush 때 update 되지 않는다
+		List<Member> result = memberJpaRepository.findByUsername_ReadOnly("member1");
+		assertThat(result).hasSize(1);
+		assertThat(em.unwrap(Session.class).isReadOnly(result.get(0))).isTrue();
+		result.get(0).setAge(99);
+		em.flush();
+		em.clear();
+		assertThat(memberJpaRepository.findByUsername("member1")).extracting("age").containsExactly(10);
+		em.clear();
+		
+		assertThat(memberJpaRepository.findAll_ReadOnly()).extracting("username").contains("member1", "member2");
+		em.clear();
+		
+		//StatelessSession 으로 읽은 엔티티는 영속성 컨텍스트에 올라가지 않는다
+		try (Stream<Member> stream = memberJpaRepository.findAllStateless(1)) {
+			List<Member> stateless = stream.filter(m -> m.getUsername().startsWith("member")).collect(Collectors.toList());
+			assertThat(stateless).extracting("username").contains("member1", "member2");
+			assertThat(stateless).noneMatch(em::contains);
+			assertThat(stateless).filteredOn(m -> m.getTeam() != null)
+				.extracting(m -> m.getTeam().getId())
+				.contains(teamA.getId());
+		}
+	}
+	
+	@Test
+	void saveAllTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		
+		List<Member> members = new ArrayList<>();
+		for(int i = 0; i < 250; i++) {
+			members.add(new Member("member" + i, i % 50, teamA));
+		}
+		
+		memberJpaRepository.saveAll(members);
+		
+		assertThat(members).allMatch(m -> m.getId() != null);
+		assertThat(em.contains(members.get(0))).isFalse();
+		assertThat(memberJpaRepository.findAll()).hasSize(250);
+	}
+	
+	@Test
+	void searchQueryCacheTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamA");
+		condition.setAgeGoe(15);
+		memberJpaRepository.serachByBuilder(condition);
+		
+		long hits = searchQueryCache.getHitCount();
+		long misses = searchQueryCache.getMissCount();
+		
+		condition.setAgeGoe(5);
+		List<MemberTeamDto> result = memberJpaRepository.serachByBuilder(condition);
+		
+		assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+		assertThat(searchQueryCache.getHitCount()).isEqualTo(hits + 1);
+		assertThat(searchQueryCache.getMissCount()).isEqualTo(misses);
+		assertThat(MemberSearchQueryCache.describe(MemberSearchQueryCache.shapeOf(condition))).isEqualTo("teamName+ageGoe");
+	}
+	
+	@Test
+	void searchResultCacheInvalidateTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		memberJpaRepository.save(new Member("member1", 10, teamA));
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamA");
+		assertThat(memberJpaRepository.serachByBuilder(condition)).hasSize(1);
+		
+		//같은 트랜잭션에서 저장한 회원도 바로 조회된다
+		memberJpaRepository.save(new Member("member2", 20, teamA));
+		assertThat(memberJpaRepository.serachByBuilder(condition)).hasSize(2);
+		
+		assertThat(memberJpaRepository.bulkDeleteByAgeGt(15)).isEqualTo(1);
+		assertThat(memberJpaRepository.serachByBuilder(condition)).extracting("username").containsExactly("member1");
+	}
+	
+	@Test
+	void findByUsernameIgnoreCaseTest() {
+		Member upper = new Member("MEMBER1", 10);
+		em.persist(upper);
+		em.persist(new Member("Member1", 20));
+		em.persist(new Member("member2", 30));
+		em.flush();
+		em.clear();
+		
+		assertThat(memberJpaRepository.findByUsernameIgnoreCase("mEmBeR1"))
+			.extracting(Member::getUsername)
+			.containsExactlyInAnyOrder("MEMBER1", "Member1");
+		
+		//username 을 바꾸면 소문자 컬럼도 같이 바뀐다
+		Member findMember = em.find(Member.class, upper.getId());
+		findMember.setUsername("Member3");
+		em.flush();
+		assertThat(memberJpaRepository.findByUsernameIgnoreCase("MEMBER3")).containsExactly(findMember);
+		
+		//JDBC 로 넣은 회원은 backfill 후에 조회된다
+		em.createNativeQuery("insert into member (member_id, username, age) values (-1, 'MEMBER4', 40)").executeUpdate();
+		assertThat(memberJpaRepository.findByUsernameIgnoreCase("member4")).isEmpty();
+		assertThat(memberJpaRepository.backfillUsernameLower()).isGreaterThanOrEqualTo(1);
+		assertThat(memberJpaRepository.findByUsernameIgnoreCase("member4")).extracting(Member::getUsername).containsExactly("MEMBER4");
+	}
+	
+	@Test
+	void serachByUsernameTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		Member kim = new Member("KimMinjun", 10, teamA);
+		em.persist(kim);
+		em.persist(new Member("leeminjun7", 20, teamA));
+		em.persist(new Member("parkjimin", 30));
+		em.persist(new Member("abcxbcd", 40));
+		em.flush();
+		
+		assertThat(memberJpaRepository.serachByUsernamePrefix("kim", 10))
+			.extracting(MemberTeamDto::getUsername).containsExactly("KimMinjun");
+		assertThat(memberJpaRepository.serachByUsernameContains("MINJUN", 10))
+			.extracting(MemberTeamDto::getUsername).containsExactly("KimMinjun", "leeminjun7");
+		//조각(abc, bcd)은 모두 있지만 이어져 있지 않으면 제외한다
+		assertThat(memberJpaRepository.serachByUsernameContains("abcd", 10)).isEmpty();
+		assertThat(memberJpaRepository.serachByUsernameContains("minjun", 1)).hasSize(1);
+		
+		//이름을 바꾸거나 삭제하면 색인도 바뀐다
+		kim.setUsername("choiyuna");
+		em.flush();
+		assertThat(memberJpaRepository.serachByUsernameContains("minjun", 10))
+			.extracting(MemberTeamDto::getUsername).containsExactly("leeminjun7");
+		assertThat(memberJpaRepository.serachByUsernameContains("yuna", 10))
+			.extracting(MemberTeamDto::getUsername).containsExactly("choiyuna");
+		
+		em.remove(kim);
+		em.flush();
+		assertThat(memberJpaRepository.serachByUsernameContains("yuna", 10)).isEmpty();
+		Number grams = (Number) em.createNativeQuery("select count(*) from member_ngram where member_id = ?")
+				.setParameter(1, kim.getId())
+				.getSingleResult();
+		assertThat(grams.longValue()).isZero();
+	}
+	
+	@Test
+	void serachByUsernameContainsPagingTest() {
+		//가장 드문 조각(qzp)의 후보가 한 번에 가져오는 수(1000)보다 많다. 색인은 flush 때 한 배치로 들어간다
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 1100; i++) {
+			Member saved = new Member("qzpaging" + i, i % 100);
+			em.persist(saved);
+			ids.add(saved.getId());
+		}
+		em.flush();
+		//결과는 회원 id 순서다
+		ids.sort(null);
+		
+		assertThat(memberJpaRepository.serachByUsernameContains("QZPAGING", 2000))
+			.extracting(MemberTeamDto::getMemberId).containsExactlyElementsOf(ids);
+		assertThat(memberJpaRepository.serachByUsernameContains("qzpaging", 1050))
+			.extracting(MemberTeamDto::getMemberId).containsExactlyElementsOf(ids.subList(0, 1050));
+		assertThat(memberJpaRepository.serachByUsernameContains("zpaging109", 20))
+			.extracting(MemberTeamDto::getUsername).containsExactlyInAnyOrder("qzpaging109", "qzpaging1090", "qzpaging1091",
+					"qzpaging1092", "qzpaging1093", "qzpaging1094", "qzpaging1095", "qzpaging1096", "qzpaging1097", "qzpaging1098",
+					"qzpaging1099");
+	}
+	
+	@Test
+	void teamStatsTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		Member member1 = new Member("member1", 10, teamA);
+		Member member2 = new Member("member2", 20, teamA);
+		Member member3 = new Member("member3", 30, teamB);
+		em.persist(member1);
+		em.persist(member2);
+		em.persist(member3);
+		em.flush();
+		
+		assertStats(teamA, 2, 30, 10, 20);
+		assertThat(teamJpaRepository.findStats(teamA.getId()).get().getAverageAge()).isEqualTo(15.0);
+		assertStats(teamB, 1, 30, 30, 30);
+		
+		//팀 이동
+		member1.setTeam(teamB);
+		em.flush();
+		assertStats(teamA, 1, 20, 20, 20);
+		assertStats(teamB, 2, 40, 10, 30);
+		
+		//나이 변경
+		member3.setAge(50);
+		em.flush();
+		assertStats(teamB, 2, 60, 10, 50);
+		
+		//경계값이 아닌 나이 변경은 차이만 반영된다
+		Member member4 = new Member("member4", 20, teamB);
+		em.persist(member4);
+		em.flush();
+		assertStats(teamB, 3, 80, 10, 50);
+		member4.setAge(25);
+		em.flush();
+		assertStats(teamB, 3, 85, 10, 50);
+		
+		//같은 팀에서 최소값이 바뀌면 다시 계산한다
+		member1.setAge(30);
+		em.flush();
+		assertStats(teamB, 3, 105, 25, 50);
+		
+		//삭제
+		em.remove(member2);
+		em.flush();
+		assertStats(teamA, 0, 0, null, null);
+		assertThat(teamJpaRepository.findStats(teamA.getId()).get().getAverageAge()).isNull();
+		
+		//벌크 연산 후에는 다시 집계한다
+		memberJpaRepository.bulkAgePlus(0);
+		assertStats(teamB, 3, 108, 26, 51);
+	}
+	
+	private void assertStats(Team team, long count, long sum, Integer min, Integer max) {
+		TeamStatsDto stats = teamJpaRepository.findStats(team.getId()).get();
+		assertThat(stats.getMemberCount()).as("count").isEqualTo(count);
+		assertThat(stats.getAgeSum()).as("sum").isEqualTo(sum);
+		assertThat(stats.getMinAge()).as("min").isEqualTo(min);
+		assertThat(stats.getMaxAge()).as("max").isEqualTo(max);
+	}
+	
+	//테스트 트랜잭션에 참여하므로 청크마다 커밋되지 않는다. 청크 커밋은 MemberBulkChunkedTest 에서 확인한다
+	@Test
+	void bulkChunkedTest() {
+		List<Member> members = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			Member saved = new Member("bulk" + i, i * 10);
+			em.persist(saved);
+			members.add(saved);
+		}
+		em.flush();
+		
+		//영속성 컨텍스트에 남아 있는 회원도 DB 와 같아져야 한다
+		Member member5 = members.get(4);
+		MemberBulkResult updated = memberJpaRepository.bulkAgePlusChunked(50, 3);
+		assertThat(updated.getRows()).isEqualTo(6);
+		assertThat(updated.getChunks()).isEqualTo(2);
+		assertThat(updated.maxLockHold()).isPositive();
+		assertThat(member5.getAge()).isEqualTo(51);
+		assertThat(members.get(3).getAge()).isEqualTo(40);
+		
+		Member member10 = members.get(9);
+		MemberBulkResult deleted = memberJpaRepository.bulkDeleteByAgeGtChunked(90, 3);
+		assertThat(deleted.getRows()).isEqualTo(2);
+		assertThat(em.contains(member10)).isFalse();
+		assertThat(em.contains(members.get(7))).isTrue();
+		assertThat(memberJpaRepository.findById(member10.getId())).isEmpty();
+		
+		//대상이 없으면 청크도 없다
+		assertThat(memberJpaRepository.bulkDeleteByAgeGtChunked(1000, 3).getChunks()).isZero();
+	}
+	
+	@Test
+	void metricsTest() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		memberJpaRepository.save(new Member("member1", 10, teamA));
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamA");
+		condition.setAgeGoe(5);
+		memberJpaRepository.serachByBuilder(condition);
+		
+		Timer timer = meterRegistry.find("member.repository")
+				.tags("method", "serachByBuilder", "shape", "teamName+ageGoe", "outcome", "success")
+				.timer();
+		DistributionSummary rows = meterRegistry.find("member.repository.rows")
+				.tags("method", "serachByBuilder", "shape", "teamName+ageGoe")
+				.summary();
+		DistributionSummary statements = meterRegistry.find("member.repository.statements")
+				.tags("method", "serachByBuilder", "shape", "teamName+ageGoe")
+				.summary();
+		
+		assertThat(timer.count()).isGreaterThanOrEqualTo(1);
+		assertThat(rows.totalAmount()).isGreaterThanOrEqualTo(1);
+		//insert(team, member) flush + select
+		assertThat(statements.max()).isGreaterThanOrEqualTo(1);
+		
+		//querydsl-sql 로 실행한 문장도 센다
+		long before = sqlStatementCounter.current();
+		assertThat(memberJpaRepository.serachByBuilder(condition, Engine.SQL)).isNotEmpty();
+		assertThat(sqlStatementCounter.current() - before).isEqualTo(1);
+	}
+	
+	@Test
+	void queryCountTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.flush();
+		em.clear();
+		
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName("teamA");
+		assertStatements(queryCountGuard, 1, () -> memberJpaRepository.serachByBuilder(condition));
+		
+		//팀마다 한 번씩 프록시가 초기화 된다
+		assertLazyLoads(queryCountGuard, "Member.team", 2, () -> 
+			memberJpaRepository.findAll_Querydsl().forEach(m -> m.getTeam().getName()));
+	}
+	
+	@Test
+	void fetchJoinTest() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40));
+		em.flush();
+		em.clear();
+		
+		//팀이 없는 회원도 빠지지 않아야 한다
+		assertStatements(queryCountGuard, 1, () -> 
+			assertThat(memberJpaRepository.findAllWithTeam_Querydsl())
+				.extracting(m -> m.getTeam() == null ? null : m.getTeam().getName())
+				.containsExactlyInAnyOrder("teamA", "teamA", "teamB", null));
+		em.clear();
+		
+		assertNoLazyLoads(queryCountGuard, () -> 
+			memberJpaRepository.findByUsernameWithTeam_Querydsl("member3").forEach(m -> m.getTeam().getName()));
+		em.clear();
+		
+		assertStatements(queryCountGuard, 1, () -> 
+			assertThat(memberJpaRepository.findAllWithTeam_EntityGraph())
+				.filteredOn(m -> m.getTeam() != null)
+				.extracting(m -> m.getTeam().getName())
+				.containsExactlyInAnyOrder("teamA", "teamA", "teamB"));
+		em.clear();
+		
+		//팀 목록 1번 + members IN 조회 1번
+		assertStatements(queryCountGuard, 2, () -> 
+			assertThat(teamJpaRepository.findAllWithMembers())
+				.extracting(t -> t.getMembers().size())
+				.containsExactly(2, 1));
+	}
+	
+	private static MemberSerachCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setUsername(username);
+		condition.setTaemName(teamName);
+		condition.setAgeGoe(ageGoe);
+		condition.setAgeLoe(ageLoe);
+		return condition;
+	}
 	
 }
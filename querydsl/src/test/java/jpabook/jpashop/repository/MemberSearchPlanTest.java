@@ -0,0 +1,124 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.internal.ast.QueryTranslatorImpl;
+import org.hibernate.param.NamedParameterSpecification;
+import org.hibernate.param.ParameterSpecification;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import jpabook.jpashop.dto.MemberKeysetCursor;
+import jpabook.jpashop.dto.MemberKeysetOrder;
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+
+/**
+ * 검색 쿼리들이 만드는 SQL 을 조건 모양마다 EXPLAIN 해서 풀 스캔(tableScan)이 없는지 확인한다.
+ * serachByBuilder(모양별 JPQL), 페이징(content, count), 키셋, 스트림 쿼리를 모두 본다.
+ * 조건이 없는 모양(0)은 전체 조회라 제외한다.
+ */
+@SpringBootTest
+@Transactional
+public class MemberSearchPlanTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberSearchQueryCache searchQueryCache;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void noFullScanTest() {
+		//쿼리 빌더는 package-private 이라 프록시가 아닌 대상 객체에서 호출한다
+		MemberJpaRepository repository = AopTestUtils.getTargetObject(memberJpaRepository);
+
+		for (int shape = 1; shape < 16; shape++) {
+			MemberSerachCondition condition = condition(shape);
+			String name = MemberSearchQueryCache.describe(shape);
+
+			MemberSearchQueryCache.Template template = searchQueryCache.template(shape);
+			Map<String, Object> values = new HashMap<>();
+			//템플릿과 같은 위치에 값을 넣기 위해 같은 모양의 Querydsl 쿼리에서 번호를 가져온다
+			serialize(repository.serachQuery(condition), values);
+			assertNoFullScan(name + " serachByBuilder", template.getJpql(), values);
+
+			assertNoFullScan(name + " content", repository.contentQuery(condition, PageRequest.of(1, 10)));
+			assertNoFullScan(name + " count", repository.countQuery(condition));
+			assertNoFullScan(name + " stream", repository.serachQuery(condition));
+			for (MemberKeysetOrder order : MemberKeysetOrder.values()) {
+				MemberKeysetCursor cursor = MemberKeysetCursor.of(new MemberTeamDto(100L, "member1", 20, 1L, "teamA"), order);
+				assertNoFullScan(name + " keyset " + order, repository.keysetQuery(condition, cursor, 10, order));
+			}
+		}
+	}
+
+	private static MemberSerachCondition condition(int shape) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setUsername((shape & MemberSearchQueryCache.USERNAME) != 0 ? "member1" : null);
+		condition.setTaemName((shape & MemberSearchQueryCache.TEAM_NAME) != 0 ? "teamA" : null);
+		condition.setAgeGoe((shape & MemberSearchQueryCache.AGE_GOE) != 0 ? 10 : null);
+		condition.setAgeLoe((shape & MemberSearchQueryCache.AGE_LOE) != 0 ? 40 : null);
+		return condition;
+	}
+
+	private void assertNoFullScan(String description, JPAQuery<?> query) {
+		Map<String, Object> values = new HashMap<>();
+		assertNoFullScan(description, serialize(query, values), values);
+	}
+
+	//JPQL 과 위치 파라미터 번호별 값
+	private static String serialize(JPAQuery<?> query, Map<String, Object> values) {
+		JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+		serializer.serialize(query.getMetadata(), false, null);
+		serializer.getConstantToLabel().forEach((value, label) -> values.put(label, value));
+		return serializer.toString();
+	}
+
+	private void assertNoFullScan(String description, String jpql, Map<String, Object> values) {
+		//위치 파라미터(?1)를 이름 파라미터(:p1)로 바꿔 번역한 SQL 의 파라미터 순서를 알아낸다
+		QueryTranslatorImpl translator = translate(jpql.replaceAll("\\?(\\d+)", ":p$1"));
+		List<Object> args = new ArrayList<>();
+		for (ParameterSpecification parameter : translator.getCollectedParameterSpecifications()) {
+			args.add(values.get(((NamedParameterSpecification) parameter).getName().substring(1)));
+		}
+
+		String plan = jdbcTemplate.queryForObject("EXPLAIN " + translator.getSQLString(), String.class, args.toArray());
+		assertThat(plan)
+			.as("%s\n%s", description, plan)
+			.doesNotContainIgnoringCase("tableScan");
+	}
+
+	private QueryTranslatorImpl translate(String jpql) {
+		SessionFactoryImplementor sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+		QueryTranslatorImpl translator = (QueryTranslatorImpl) new ASTQueryTranslatorFactory()
+				.createQueryTranslator(jpql, jpql, Collections.emptyMap(), sessionFactory, null);
+		translator.compile(Collections.emptyMap(), false);
+		return translator;
+	}
+}
@@ -0,0 +1,130 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jpabook.jpashop.dto.MemberSerachCondition;
+import jpabook.jpashop.dto.MemberTeamDto;
+import jpabook.jpashop.repository.support.ReplicaRoutingDataSource;
+
+public class MemberSearchResultCacheTest {
+
+	AtomicInteger loads = new AtomicInteger();
+	
+	Function<MemberSerachCondition, List<MemberTeamDto>> loader(int rows) {
+		return condition -> {
+			loads.incrementAndGet();
+			List<MemberTeamDto> result = new ArrayList<>();
+			for(int i = 0; i < rows; i++) {
+				result.add(new MemberTeamDto((long) i, "member" + i, i, 1L, condition.getTaemName()));
+			}
+			return result;
+		};
+	}
+	
+	MemberSerachCondition teamCondition(String teamName) {
+		MemberSerachCondition condition = new MemberSerachCondition();
+		condition.setTaemName(teamName);
+		return condition;
+	}
+	
+	@Test
+	void hitAndInvalidate() {
+		MemberSearchResultCache cache = new MemberSearchResultCache(true, 1000, 100, Duration.ofMinutes(1));
+		
+		List<MemberTeamDto> first = cache.get(teamCondition("teamA"), loader(2));
+		List<MemberTeamDto> second = cache.get(teamCondition("teamA"), loader(2));
+		
+		assertThat(loads.get()).isEqualTo(1);
+		assertThat(second).isEqualTo(first);
+		assertThat(cache.stats().hitCount()).isEqualTo(1);
+		assertThat(cache.stats().missCount()).isEqualTo(1);
+		
+		//캐시된 결과를 수정해도 캐시에는 영향이 없다
+		second.get(0).setUsername("changed");
+		assertThat(cache.get(teamCondition("teamA"), loader(2)).get(0).getUsername()).isEqualTo("member0");
+		
+		cache.onWrite();
+		cache.get(teamCondition("teamA"), loader(2));
+		assertThat(loads.get()).isEqualTo(2);
+	}
+	
+	@Test
+	void sizeAndWeightLimit() {
+		MemberSearchResultCache cache = new MemberSearchResultCache(true, 30, 10, Duration.ofMinutes(1));
+		
+		//max-entry-rows 보다 큰 결과는 캐시하지 않는다
+		cache.get(teamCondition("big"), loader(11));
+		cache.get(teamCondition("big"), loader(11));
+		assertThat(loads.get()).isEqualTo(2);
+		
+		//전체 무게(행 수 + 1)가 30을 넘으면 제거된다
+		for(int i = 0; i < 10; i++) {
+			cache.get(teamCondition("team" + i), loader(9));
+		}
+		cache.cleanUp();
+		assertThat(cache.estimatedSize()).isLessThanOrEqualTo(3);
+		assertThat(cache.stats().evictionCount()).isGreaterThan(0);
+	}
+	
+	@Test
+	void replicaReadsNotCached() {
+		ReplicaRoutingDataSource replicaRouting = new ReplicaRoutingDataSource(
+				new DriverManagerDataSource(), new DriverManagerDataSource(), Duration.ZERO);
+		MemberSearchResultCache cache = new MemberSearchResultCache(true, 1000, 100, Duration.ofMinutes(1), Optional.of(replicaRouting));
+		
+		//읽기 전용이면 replica 에서 읽으므로 캐시하지 않는다
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		try {
+			cache.get(teamCondition("teamA"), loader(1));
+			cache.get(teamCondition("teamA"), loader(1));
+			assertThat(loads.get()).isEqualTo(2);
+		} finally {
+			TransactionSynchronizationManager.clear();
+		}
+		
+		//primary 에서 읽은 결과는 캐시하고, 그 뒤에는 replica 에서 읽는 호출에도 돌려준다
+		cache.get(teamCondition("teamA"), loader(1));
+		cache.get(teamCondition("teamA"), loader(1));
+		assertThat(loads.get()).isEqualTo(3);
+	}
+	
+	@Test
+	void bypassInReadWriteTransaction() {
+		MemberSearchResultCache cache = new MemberSearchResultCache(true, 1000, 100, Duration.ofMinutes(1));
+		cache.get(teamCondition("teamA"), loader(1));
+		
+		//flush 전 변경이 있을 수 있으므로 쓰기 트랜잭션에서는 캐시를 쓰지 않는다
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			cache.get(teamCondition("teamA"), loader(1));
+			assertThat(loads.get()).isEqualTo(2);
+			
+			TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+			cache.get(teamCondition("teamA"), loader(1));
+			assertThat(loads.get()).isEqualTo(2);
+		} finally {
+			TransactionSynchronizationManager.clear();
+		}
+	}
+	
+	@Test
+	void disabled() {
+		MemberSearchResultCache cache = new MemberSearchResultCache(false, 1000, 100, Duration.ofMinutes(1));
+		
+		cache.get(teamCondition("teamA"), loader(1));
+		cache.get(teamCondition("teamA"), loader(1));
+		
+		assertThat(loads.get()).isEqualTo(2);
+	}
+}
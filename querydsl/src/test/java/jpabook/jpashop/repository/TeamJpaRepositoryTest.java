@@ -0,0 +1,79 @@
+package jpabook.jpashop.repository;
+
+import static jpabook.jpashop.entity.QTeam.team;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * 쿼리 캐시는 커밋된 데이터만 적중하므로 트랜잭션을 직접 나눠서 커밋한다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+@ActiveProfiles("cache")
+public class TeamJpaRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	JPAQueryFactory queryFactory;
+	
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+	
+	@Autowired
+	TransactionTemplate transactionTemplate;
+	
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	
+	//DB 를 직접 비웠으므로 2차 캐시도 비운다
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+		em.getEntityManagerFactory().getCache().unwrap(Cache.class).evictAllRegions();
+	}
+	
+	@Test
+	void cacheTest() {
+		String name = "cacheTeam";
+		Team saved = new Team(name);
+		transactionTemplate.executeWithoutResult(status -> teamJpaRepository.save(saved));
+		Long teamId = saved.getId();
+		
+		//엔티티 캐시
+		long entityHits = teamJpaRepository.teamCacheStatistics().getHitCount();
+		transactionTemplate.executeWithoutResult(status -> teamJpaRepository.findById(teamId));
+		transactionTemplate.executeWithoutResult(status -> teamJpaRepository.findById(teamId));
+		assertThat(teamJpaRepository.teamCacheStatistics().getHitCount()).isGreaterThan(entityHits);
+		
+		//쿼리 캐시
+		transactionTemplate.executeWithoutResult(status -> teamJpaRepository.findByName(name));
+		long queryHits = teamJpaRepository.teamByNameCacheStatistics().getHitCount();
+		Team cached = transactionTemplate.execute(status -> teamJpaRepository.findByName(name).get());
+		assertThat(cached.getId()).isEqualTo(teamId);
+		assertThat(teamJpaRepository.teamByNameCacheStatistics().getHitCount()).isEqualTo(queryHits + 1);
+		
+		//벌크 수정 후에는 캐시된 결과를 쓰지 않는다
+		String renamed = name + "-renamed";
+		transactionTemplate.executeWithoutResult(status -> 
+			queryFactory.update(team).set(team.name, renamed).where(team.id.eq(teamId)).execute());
+		
+		assertThat(transactionTemplate.execute(status -> teamJpaRepository.findByName(name))).isEmpty();
+		assertThat(transactionTemplate.execute(status -> teamJpaRepository.findById(teamId).get().getName())).isEqualTo(renamed);
+	}
+}
@@ -0,0 +1,110 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.dto.TeamStatsDto;
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.entity.Team;
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * team_stats 는 커밋 직전에 반영되므로 데이터를 커밋하고 JDBC 로 확인한다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+public class TeamStatsMaintainerTest {
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	TeamJpaRepository teamJpaRepository;
+
+	@Autowired
+	TeamStatsMaintainer teamStatsMaintainer;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+	}
+
+	@Test
+	void appliedOnceBeforeCommitTest() {
+		Team teamA = transactionTemplate.execute(status -> {
+			Team saved = new Team("teamA");
+			teamJpaRepository.save(saved);
+			memberJpaRepository.saveAll(IntStream.rangeClosed(1, 250)
+					.mapToObj(i -> new Member("member" + i, i, saved))
+					.collect(Collectors.toList()));
+			//flush 는 되었지만 요약 행은 아직 없다
+			assertThat(stats(saved.getId())).isEmpty();
+			return saved;
+		});
+
+		Map<String, Object> stats = stats(teamA.getId()).get(0);
+		assertThat(((Number) stats.get("member_count")).longValue()).isEqualTo(250);
+		assertThat(((Number) stats.get("age_sum")).longValue()).isEqualTo(250 * 251 / 2);
+		assertThat(stats.get("min_age")).isEqualTo(1);
+		assertThat(stats.get("max_age")).isEqualTo(250);
+	}
+
+	@Test
+	void rolledBackNotAppliedTest() {
+		Team teamA = transactionTemplate.execute(status -> {
+			Team saved = new Team("teamA");
+			teamJpaRepository.save(saved);
+			memberJpaRepository.save(new Member("member1", 10, saved));
+			return saved;
+		});
+
+		transactionTemplate.executeWithoutResult(status -> {
+			memberJpaRepository.save(new Member("member2", 20, teamJpaRepository.findById(teamA.getId()).get()));
+			status.setRollbackOnly();
+		});
+		assertThat(teamJpaRepository.findStats(teamA.getId()).get().getMemberCount()).isEqualTo(1);
+		assertThat(teamJpaRepository.findStats(teamA.getId()).get().getAgeSum()).isEqualTo(10);
+	}
+
+	@Test
+	void fillMissingTest() {
+		Team teamA = transactionTemplate.execute(status -> {
+			Team saved = new Team("teamA");
+			teamJpaRepository.save(saved);
+			memberJpaRepository.save(new Member("member1", 10, saved));
+			memberJpaRepository.save(new Member("member2", 20, saved));
+			return saved;
+		});
+		//team_stats 가 생기기 전부터 있던 팀과 같은 상태
+		jdbcTemplate.update("delete from team_stats");
+		assertThat(teamJpaRepository.findAllStats()).isEmpty();
+
+		assertThat(teamStatsMaintainer.fillMissing()).isEqualTo(1);
+		assertThat(teamStatsMaintainer.fillMissing()).isZero();
+		assertThat(teamJpaRepository.findAllStats())
+			.extracting(TeamStatsDto::getTeamId, TeamStatsDto::getMemberCount, TeamStatsDto::getAgeSum)
+			.containsExactly(tuple(teamA.getId(), 2L, 30L));
+	}
+
+	private List<Map<String, Object>> stats(Long teamId) {
+		return jdbcTemplate.queryForList(
+				"select member_count, age_sum, min_age, max_age from team_stats where team_id = ?", teamId);
+	}
+}
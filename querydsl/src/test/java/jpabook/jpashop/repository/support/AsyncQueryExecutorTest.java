@@ -0,0 +1,95 @@
+package jpabook.jpashop.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import jpabook.jpashop.repository.support.AsyncQueryExecutor.Mode;
+
+public class AsyncQueryExecutorTest {
+
+	AsyncQueryExecutor executor = new AsyncQueryExecutor(Mode.POOL, 1, 2);
+
+	@AfterEach
+	void shutdown() throws InterruptedException {
+		executor.destroy();
+	}
+
+	@Test
+	void rejectWhenPendingIsFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> first = executor.submit(() -> await(release, "first"));
+		CompletableFuture<String> second = executor.submit(() -> "second");
+		
+		//실행 1건 + 대기 1건이 차 있으면 바로 실패한다
+		CompletableFuture<String> third = executor.submit(() -> "third");
+		assertThatThrownBy(third::get)
+			.isInstanceOf(ExecutionException.class)
+			.hasCauseInstanceOf(RejectedExecutionException.class);
+		assertThat(executor.getPending()).isEqualTo(2);
+		
+		release.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+		assertThat(executor.getPending()).isZero();
+		assertThat(executor.submit(() -> "fourth").get(5, TimeUnit.SECONDS)).isEqualTo("fourth");
+	}
+
+	@Test
+	void failedTaskReleasesPermit() throws Exception {
+		CompletableFuture<Object> failed = executor.submit(() -> {
+			throw new IllegalStateException("boom");
+		});
+		assertThatThrownBy(failed::get).hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(executor.getPending()).isZero();
+	}
+
+	@Test
+	void cancelledTaskReleasesPermit() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean secondRan = new AtomicBoolean();
+		CompletableFuture<String> running = executor.submit(() -> await(release, "running"));
+		CompletableFuture<String> queued = executor.submit(() -> {
+			secondRan.set(true);
+			return "queued";
+		});
+		assertThat(executor.getPending()).isEqualTo(2);
+		
+		//실행 중인 조회와 대기 중인 조회를 모두 취소해도 자리는 작업이 끝날 때 반납된다
+		running.cancel(false);
+		queued.orTimeout(1, TimeUnit.MILLISECONDS);
+		assertThatThrownBy(queued::join).isInstanceOf(CompletionException.class);
+		release.countDown();
+		
+		awaitPendingZero();
+		assertThat(secondRan).isFalse();
+		assertThat(executor.submit(() -> "next").get(5, TimeUnit.SECONDS)).isEqualTo("next");
+	}
+
+	private void awaitPendingZero() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (executor.getPending() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(executor.getPending()).isZero();
+	}
+
+	private static String await(CountDownLatch latch, String value) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return value;
+	}
+}
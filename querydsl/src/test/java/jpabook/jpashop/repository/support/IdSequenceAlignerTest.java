@@ -0,0 +1,59 @@
+package jpabook.jpashop.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jpabook.jpashop.support.TestDatabase;
+
+/**
+ * hibernate_sequence 로 id 를 받던 기존 DB 를 흉내낸다. 시퀀스를 1로 되돌리고 큰 id 의 행을 JDBC 로 넣는다.
+ */
+@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+public class IdSequenceAlignerTest {
+
+	@Autowired
+	IdSequenceAligner idSequenceAligner;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		TestDatabase.truncateAll(jdbcTemplate);
+	}
+
+	@Test
+	void restartAboveExistingIdsTest() {
+		jdbcTemplate.execute("alter sequence member_seq restart with 1");
+		jdbcTemplate.execute("alter sequence team_seq restart with 1");
+		jdbcTemplate.update("insert into team (id, name) values (?, ?)", 3000L, "oldTeam");
+		jdbcTemplate.update("insert into member (member_id, username, username_lower, age, team_id) values (?, ?, ?, ?, ?)",
+				5000L, "old", "old", 10, 3000L);
+
+		idSequenceAligner.alignAll();
+
+		assertThat(nextValue("member_seq")).isEqualTo(5001L);
+		assertThat(nextValue("team_seq")).isEqualTo(3001L);
+	}
+
+	@Test
+	void keepSequenceAheadOfIdsTest() {
+		jdbcTemplate.execute("alter sequence member_seq restart with 9000");
+		jdbcTemplate.update("insert into member (member_id, username, username_lower, age) values (?, ?, ?, ?)",
+				5000L, "old", "old", 10);
+
+		idSequenceAligner.alignAll();
+
+		//이미 max(id) 보다 뒤에 있으면 되돌리지 않는다
+		assertThat(nextValue("member_seq")).isEqualTo(9000L);
+	}
+
+	private Long nextValue(String sequence) {
+		return jdbcTemplate.queryForObject("select nextval('" + sequence + "')", Long.class);
+	}
+}
@@ -0,0 +1,68 @@
+package jpabook.jpashop.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jpabook.jpashop.repository.support.QueryCountGuard.Mode;
+import jpabook.jpashop.repository.support.QueryCountGuard.Recording;
+
+public class QueryCountGuardTest {
+
+	@BeforeEach
+	void beginTransaction() {
+		TransactionSynchronizationManager.initSynchronization();
+	}
+
+	@AfterEach
+	void endTransaction() {
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+
+	@Test
+	void failOnLazyLoadBurst() {
+		QueryCountGuard guard = new QueryCountGuard(Mode.FAIL, 100, 2);
+
+		guard.onLazyLoad("Member.team");
+		guard.onLazyLoad("Member.team");
+		guard.onLazyLoad("Team.members");
+
+		assertThatThrownBy(() -> guard.onLazyLoad("Member.team"))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("Member.team");
+	}
+
+	@Test
+	void failOnStatementCount() {
+		QueryCountGuard guard = new QueryCountGuard(Mode.FAIL, 3, 10);
+
+		guard.onStatement();
+		guard.onStatement();
+		guard.onStatement();
+
+		assertThatThrownBy(guard::onStatement).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void measure() {
+		QueryCountGuard guard = new QueryCountGuard(Mode.LOG, 1, 1);
+
+		guard.onStatement();
+		Recording recording = guard.measure(() -> {
+			guard.onStatement();
+			guard.onLazyLoad("Member.team");
+			guard.onLazyLoad("Member.team");
+		});
+
+		assertThat(recording.getStatements()).isEqualTo(1);
+		assertThat(recording.getLazyLoads("Member.team")).isEqualTo(2);
+	}
+}
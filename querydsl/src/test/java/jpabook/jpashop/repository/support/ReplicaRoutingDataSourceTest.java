@@ -0,0 +1,152 @@
+package jpabook.jpashop.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.entity.Member;
+import jpabook.jpashop.repository.MemberJpaRepository;
+import jpabook.jpashop.repository.support.ReplicaRoutingDataSource.Target;
+
+/**
+ * in-memory H2 두 개를 primary / replica 로 사용한다. 복제는 없으므로 replica 에는 테스트에서 직접 넣는다.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=" + ReplicaRoutingDataSourceTest.PRIMARY_URL,
+		"member.datasource.replica.url=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+		"member.datasource.read-your-writes=1m",
+		"spring.jpa.hibernate.ddl-auto=create" })
+public class ReplicaRoutingDataSourceTest {
+
+	static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+	static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	ReplicaRoutingDataSource replicaRoutingDataSource;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+	JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+	//ddl-auto 는 primary 에만 적용되므로 스키마를 replica 로 복사한다
+	@BeforeEach
+	void copySchema() {
+		replica.execute("DROP ALL OBJECTS");
+		for (String statement : primary.queryForList("SCRIPT NODATA", String.class)) {
+			if (!statement.startsWith("--")) {
+				replica.execute(statement);
+			}
+		}
+	}
+
+	@Test
+	void routingTest() {
+		Member saved = new Member("routing1", 10);
+		memberJpaRepository.save(saved);
+		Long id = saved.getId();
+
+		//쓰기를 한 스레드는 read-your-writes 시간 동안 primary 에서 읽는다
+		assertThat(memberJpaRepository.findById(id)).isPresent();
+
+		//다른 스레드의 읽기 전용 호출은 replica 로 간다. 아직 복제되지 않았다
+		assertThat(onOtherThread(() -> memberJpaRepository.findById(id))).isEmpty();
+
+		replica.update("insert into member (member_id, username, username_lower, age) values (?, ?, ?, ?)", id, "routing1", "routing1", 10);
+		assertThat(onOtherThread(() -> memberJpaRepository.findById(id)))
+			.map(Member::getUsername).contains("routing1");
+
+		//primary 에서 지워도 replica 에서 읽으므로 보인다
+		primary.update("delete from member where member_id = ?", id);
+		assertThat(onOtherThread(() -> memberJpaRepository.findById(id))).isPresent();
+	}
+
+	@Test
+	void targetTest() {
+		assertThat(onOtherThread(() -> transactionTemplate.execute(status -> replicaRoutingDataSource.currentTarget())))
+			.isEqualTo(Target.PRIMARY);
+
+		TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+		readOnly.setReadOnly(true);
+		assertThat(onOtherThread(() -> readOnly.execute(status -> replicaRoutingDataSource.currentTarget())))
+			.isEqualTo(Target.REPLICA);
+		assertThat(onOtherThread(replicaRoutingDataSource::currentTarget)).isEqualTo(Target.PRIMARY);
+	}
+
+	@Test
+	void readYourWritesAcrossThreadsTest() {
+		Long id = onOtherThread(() -> asCaller("user1", () -> {
+			Member saved = new Member("routing2", 20);
+			memberJpaRepository.save(saved);
+			return saved.getId();
+		}));
+
+		//같은 호출자의 다음 요청은 다른 스레드에서 처리되어도 primary 에서 읽는다
+		assertThat(onOtherThread(() -> asCaller("user1", () -> memberJpaRepository.findById(id)))).isPresent();
+		//다른 호출자는 replica 에서 읽는다. 아직 복제되지 않았다
+		assertThat(onOtherThread(() -> asCaller("user2", () -> memberJpaRepository.findById(id)))).isEmpty();
+	}
+
+	@Test
+	void filterTest() {
+		ReadYourWritesFilter filter = new ReadYourWritesFilter(replicaRoutingDataSource);
+		AtomicReference<Long> id = new AtomicReference<>();
+		onOtherThread(() -> doFilter(filter, "user3", () -> {
+			Member saved = new Member("routing3", 30);
+			memberJpaRepository.save(saved);
+			id.set(saved.getId());
+		}));
+
+		AtomicReference<Optional<Member>> sameClient = new AtomicReference<>();
+		onOtherThread(() -> doFilter(filter, "user3", () -> sameClient.set(memberJpaRepository.findById(id.get()))));
+		assertThat(sameClient.get()).isPresent();
+
+		AtomicReference<Optional<Member>> noClient = new AtomicReference<>();
+		onOtherThread(() -> doFilter(filter, null, () -> noClient.set(memberJpaRepository.findById(id.get()))));
+		assertThat(noClient.get()).isEmpty();
+	}
+
+	private <T> T asCaller(String key, Supplier<T> action) {
+		try (ReplicaRoutingDataSource.Scope scope = replicaRoutingDataSource.bindCaller(key)) {
+			return action.get();
+		}
+	}
+
+	private static Void doFilter(ReadYourWritesFilter filter, String clientId, Runnable action) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		if (clientId != null) {
+			request.addHeader(ReadYourWritesFilter.CLIENT_ID_HEADER, clientId);
+		}
+		try {
+			filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> action.run());
+		} catch (IOException | ServletException e) {
+			throw new IllegalStateException(e);
+		}
+		return null;
+	}
+
+	//새 스레드에서 실행해서 read-your-writes 기록이 없는 상태로 만든다
+	private static <T> T onOtherThread(Supplier<T> action) {
+		return CompletableFuture.supplyAsync(action, runnable -> new Thread(runnable).start()).join();
+	}
+}
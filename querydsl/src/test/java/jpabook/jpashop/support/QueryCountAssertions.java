@@ -0,0 +1,36 @@
+package jpabook.jpashop.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jpabook.jpashop.repository.support.QueryCountGuard;
+import jpabook.jpashop.repository.support.QueryCountGuard.Recording;
+
+/**
+ * 핫 패스의 SQL 문장 수를 테스트에서 고정할 때 사용한다.
+ * 영속성 컨텍스트에 쌓인 변경이 같이 flush 되지 않도록 측정 전에 em.flush() 해 둔다.
+ */
+public final class QueryCountAssertions {
+
+	private QueryCountAssertions() {
+	}
+
+	public static Recording assertStatements(QueryCountGuard guard, long expected, Runnable action) {
+		Recording recording = guard.measure(action);
+		assertThat(recording.getStatements())
+			.as("SQL 문장 수 (지연 로딩 = %s)", recording.getLazyLoads())
+			.isEqualTo(expected);
+		return recording;
+	}
+
+	public static Recording assertNoLazyLoads(QueryCountGuard guard, Runnable action) {
+		Recording recording = guard.measure(action);
+		assertThat(recording.getLazyLoads()).as("지연 로딩").isEmpty();
+		return recording;
+	}
+
+	public static Recording assertLazyLoads(QueryCountGuard guard, String path, long expected, Runnable action) {
+		Recording recording = guard.measure(action);
+		assertThat(recording.getLazyLoads(path)).as(path + " 지연 로딩").isEqualTo(expected);
+		return recording;
+	}
+}
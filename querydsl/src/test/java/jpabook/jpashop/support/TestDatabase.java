@@ -0,0 +1,33 @@
+package jpabook.jpashop.support;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 데이터를 커밋하는 테스트용 DB. 공유 DB(jdbc:h2:tcp://localhost/~/querydsl) 대신 in-memory H2 를 쓰고
+ * 테스트가 끝나면 모든 테이블을 비운다.
+ * 벌크 삭제로 정리하면 리스너가 관리하는 member_ngram, team_stats 가 남으므로 쓰지 않는다.
+ */
+public final class TestDatabase {
+
+	//@SpringBootTest(properties = TestDatabase.IN_MEMORY)
+	public static final String IN_MEMORY = "spring.datasource.url=jdbc:h2:mem:committed-test;DB_CLOSE_DELAY=-1";
+
+	private TestDatabase() {
+	}
+
+	public static void truncateAll(JdbcTemplate jdbcTemplate) {
+		List<String> tables = jdbcTemplate.queryForList(
+				"select table_name from information_schema.tables where table_schema = 'PUBLIC' and table_type = 'TABLE'",
+				String.class);
+		jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+		try {
+			for (String table : tables) {
+				jdbcTemplate.execute("TRUNCATE TABLE " + table);
+			}
+		} finally {
+			jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+		}
+	}
+}